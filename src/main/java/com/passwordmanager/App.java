@@ -1,6 +1,8 @@
 package com.passwordmanager;
 
 import com.passwordmanager.config.ConfigLoader;
+import com.passwordmanager.crypto.CipherSuite;
+import com.passwordmanager.dao.Dictionaries;
 import com.passwordmanager.db.DatabaseManager;
 import com.passwordmanager.service.*;
 import com.passwordmanager.ui.SceneManager;
@@ -32,9 +34,13 @@ public class App extends Application {
             return;
         }
 
+        // Cipher suite for new writes (benchmarks AES-GCM vs ChaCha20 when set to auto)
+        CipherSuite.configure(ConfigLoader.get("security.cipherSuite", "auto"));
+
         // Initialise database
         try {
             DatabaseManager.init();
+            Dictionaries.load();
         } catch (Exception e) {
             showFatalError("Database connection failed",
                     "Cannot connect to MySQL.\n\n"
@@ -27,6 +27,13 @@ public class ConfigLoader {
         initialized = true;
     }
 
+    /** Uses {@code props} instead of a config file (tests). */
+    public static void init(Properties props) {
+        PROPS.clear();
+        PROPS.putAll(props);
+        initialized = true;
+    }
+
     public static String get(String key) {
         ensureInit();
         return PROPS.getProperty(key);
@@ -0,0 +1,71 @@
+package com.passwordmanager.crypto;
+
+import de.mkammerer.argon2.Argon2Advanced;
+import de.mkammerer.argon2.Argon2Factory;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.*;
+
+/**
+ * Argon2id via the native reference implementation.
+ *
+ * Each of the {@code parallelism} lanes is filled on its own thread, so on a
+ * multi-core machine the same unlock budget buys proportionally more
+ * memory-hard work than single-threaded PBKDF2.
+ */
+public final class Argon2idKeyDerivation implements KeyDerivation {
+
+    public static final String ID               = "ARGON2ID";
+    public static final String META_ITERATIONS  = "kdf_iterations";
+    public static final String META_MEMORY_KIB  = "kdf_memory_kib";
+    public static final String META_PARALLELISM = "kdf_parallelism";
+
+    private static final int KEY_BYTES = 32;
+
+    private final int iterations;
+    private final int memoryKib;
+    private final int parallelism;
+
+    public Argon2idKeyDerivation(int iterations, int memoryKib, int parallelism) {
+        if (iterations < 1 || parallelism < 1 || memoryKib < 8 * parallelism) {
+            throw new IllegalArgumentException("Invalid Argon2id parameters");
+        }
+        this.iterations  = iterations;
+        this.memoryKib   = memoryKib;
+        this.parallelism = parallelism;
+    }
+
+    @Override public String id() { return ID; }
+
+    @Override
+    public SecretKey derive(char[] password, byte[] salt) throws GeneralSecurityException {
+        Argon2Advanced argon2 = Argon2Factory.createAdvanced(Argon2Factory.Argon2Types.ARGON2id, salt.length, KEY_BYTES);
+        byte[] raw;
+        try {
+            raw = argon2.rawHash(iterations, memoryKib, parallelism, password, StandardCharsets.UTF_8, salt);
+        } catch (IllegalStateException e) {
+            throw new GeneralSecurityException("Argon2id derivation failed", e);
+        }
+        try {
+            return new SecretKeySpec(raw, "AES");
+        } finally {
+            Arrays.fill(raw, (byte) 0);
+        }
+    }
+
+    @Override
+    public Map<String, String> parameters() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put(META_ITERATIONS,  String.valueOf(iterations));
+        params.put(META_MEMORY_KIB,  String.valueOf(memoryKib));
+        params.put(META_PARALLELISM, String.valueOf(parallelism));
+        return params;
+    }
+
+    public int getIterations()  { return iterations; }
+    public int getMemoryKib()   { return memoryKib; }
+    public int getParallelism() { return parallelism; }
+}
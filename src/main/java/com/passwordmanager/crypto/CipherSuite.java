@@ -0,0 +1,145 @@
+package com.passwordmanager.crypto;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.*;
+import java.lang.management.ManagementFactory;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * The AEAD ciphers a vault blob can be encrypted with. The one-byte {@link #id()} is
+ * written in front of every blob, so vaults that mix suites decrypt correctly.
+ *
+ * Both suites use a 256-bit key, a 12-byte nonce and a 16-byte tag. AES-GCM is
+ * fastest with AES instructions; ChaCha20-Poly1305 is much faster on CPUs without
+ * them. {@link #configure(String)} picks the suite used for new writes at startup.
+ */
+public enum CipherSuite {
+
+    AES_GCM((byte) 0x01, "AES/GCM/NoPadding") {
+        @Override AlgorithmParameterSpec params(byte[] buf, int off) {
+            return new GCMParameterSpec(TAG_BITS, buf, off, NONCE_LEN);
+        }
+        @Override Key keyFor(SecretKey key) { return key; }
+    },
+
+    CHACHA20_POLY1305((byte) 0x02, "ChaCha20-Poly1305") {
+        @Override AlgorithmParameterSpec params(byte[] buf, int off) {
+            return new IvParameterSpec(buf, off, NONCE_LEN);
+        }
+        @Override Key keyFor(SecretKey key) { return new SecretKeySpec(key.getEncoded(), "ChaCha20"); }
+
+        // The JDK provider refuses to re-init with the key/nonce pair it last saw
+        // (even to decrypt what it just encrypted), so instances are not reused.
+        @Override Cipher cipher() { return newCipher(); }
+    };
+
+    static final int NONCE_LEN = 12;
+    static final int TAG_BITS  = 128;
+
+    private static final int BENCH_BLOB_BYTES = 4 * 1024;
+    private static final int BENCH_ROUNDS     = 200;
+
+    private static volatile CipherSuite forWrites = AES_GCM;
+
+    private final byte   id;
+    private final String transform;
+    private final ThreadLocal<Cipher> cipher;
+
+    CipherSuite(byte id, String transform) {
+        this.id        = id;
+        this.transform = transform;
+        this.cipher    = ThreadLocal.withInitial(this::newCipher);
+    }
+
+    public byte id() { return id; }
+
+    /** Per-thread cipher instance for this suite. */
+    Cipher cipher() { return cipher.get(); }
+
+    abstract AlgorithmParameterSpec params(byte[] buf, int off);
+
+    /** Adapts a vault data key (algorithm "AES") to what this suite's provider expects. */
+    abstract Key keyFor(SecretKey key);
+
+    /** Suite for a header byte, or null if the byte is not a known suite id. */
+    public static CipherSuite byId(byte id) {
+        for (CipherSuite s : values()) if (s.id == id) return s;
+        return null;
+    }
+
+    // ── Selection for new writes ──────────────────────────────────────────────
+
+    public static CipherSuite forWrites() { return forWrites; }
+
+    /**
+     * Sets the suite for new writes from {@code security.cipherSuite}:
+     * {@code aes-gcm}, {@code chacha20-poly1305}, or {@code auto} to benchmark both on this host.
+     */
+    public static CipherSuite configure(String setting) {
+        forWrites = switch (setting == null ? "auto" : setting.trim().toLowerCase()) {
+            case "aes-gcm"           -> AES_GCM;
+            case "chacha20-poly1305" -> CHACHA20_POLY1305;
+            default                  -> fastest();
+        };
+        return forWrites;
+    }
+
+    /**
+     * Picks the faster suite on this host. When HotSpot reports AES instructions that is
+     * AES-GCM – a benchmark short enough for startup finishes before the JIT compiles the
+     * AES intrinsics and would wrongly favour ChaCha20. Otherwise (or on a VM that doesn't
+     * say) it times encrypt+decrypt of a field-sized blob with each suite.
+     */
+    static CipherSuite fastest() {
+        if (Boolean.TRUE.equals(hardwareAes())) return AES_GCM;
+
+        SecretKey key  = CryptoUtil.generateDataKey();
+        byte[]    data = new byte[BENCH_BLOB_BYTES];
+        CipherSuite best = AES_GCM;
+        long bestNanos   = Long.MAX_VALUE;
+        for (CipherSuite suite : values()) {
+            try {
+                CryptoUtil.benchmarkRoundTrip(suite, data, key, BENCH_ROUNDS);   // warm-up
+                long start = System.nanoTime();
+                CryptoUtil.benchmarkRoundTrip(suite, data, key, BENCH_ROUNDS);
+                long nanos = System.nanoTime() - start;
+                if (nanos < bestNanos) { bestNanos = nanos; best = suite; }
+            } catch (IllegalStateException e) {
+                // Suite not available on this JVM – skip it; any other failure is a real bug
+                if (!(e.getCause() instanceof NoSuchAlgorithmException
+                      || e.getCause() instanceof NoSuchPaddingException)) throw e;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Benchmark of " + suite + " failed", e);
+            }
+        }
+        return best;
+    }
+
+    /** HotSpot's UseAES flag, or null if the VM doesn't expose it. */
+    private static Boolean hardwareAes() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return hotspot != null ? Boolean.valueOf(hotspot.getVMOption("UseAES").getValue()) : null;
+        } catch (IllegalArgumentException | LinkageError e) {
+            return null;
+        }
+    }
+
+    Cipher newCipher() {
+        try {
+            return Cipher.getInstance(transform);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transform + " not available", e);
+        }
+    }
+
+    @Override
+    public String toString() { return transform; }
+}
@@ -0,0 +1,94 @@
+package com.passwordmanager.crypto;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dedicated worker pool for bulk AES-GCM work (audit, export, full-vault scans).
+ *
+ * The pool is sized to the available cores. Input is split into one contiguous
+ * chunk per worker, so the result list keeps input order and the queue never
+ * holds more than one task per thread. The first tag mismatch cancels the
+ * remaining chunks and is rethrown to the caller.
+ */
+public final class CryptoExecutor {
+
+    /** Below this many blobs the hand-off costs more than it saves. */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "crypto-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private CryptoExecutor() {}
+
+    /**
+     * Decrypts every {@code IV || ciphertext+tag} blob with {@code key}.
+     *
+     * @return plaintexts in the same order as {@code blobs}
+     * @throws GeneralSecurityException on the first blob that fails authentication
+     */
+    public static List<byte[]> decryptAll(List<byte[]> blobs, SecretKey key) throws GeneralSecurityException {
+        return decryptAll(blobs, Collections.nCopies(blobs.size(), key), null);
+    }
+
+    /**
+     * Like {@link #decryptAll(List, SecretKey)}, but with one key per blob – used when rows
+     * written under different key versions are read together during a key rotation –
+     * and optionally one AAD per blob ({@code aads} may be null).
+     */
+    public static List<byte[]> decryptAll(List<byte[]> blobs, List<SecretKey> keys, List<byte[]> aads)
+            throws GeneralSecurityException {
+        int n = blobs.size();
+        byte[][] out = new byte[n][];
+        if (n < PARALLEL_THRESHOLD || THREADS == 1) {
+            for (int i = 0; i < n; i++) out[i] = decrypt(blobs, keys, aads, i);
+            return Arrays.asList(out);
+        }
+
+        int chunks    = Math.min(THREADS, n);
+        int chunkSize = (n + chunks - 1) / chunks;
+        AtomicBoolean failed = new AtomicBoolean(false);
+        CompletionService<Void> cs = new ExecutorCompletionService<>(POOL);
+        List<Future<Void>> futures = new ArrayList<>(chunks);
+
+        for (int from = 0; from < n; from += chunkSize) {
+            int start = from, end = Math.min(n, from + chunkSize);
+            futures.add(cs.submit(() -> {
+                for (int i = start; i < end && !failed.get(); i++) {
+                    out[i] = decrypt(blobs, keys, aads, i);
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (int i = 0; i < futures.size(); i++) cs.take().get();
+        } catch (ExecutionException e) {
+            failed.set(true);
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof GeneralSecurityException gse) throw gse;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Bulk decryption failed", cause);
+        } catch (InterruptedException e) {
+            failed.set(true);
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bulk decryption interrupted", e);
+        }
+        return Arrays.asList(out);
+    }
+
+    private static byte[] decrypt(List<byte[]> blobs, List<SecretKey> keys, List<byte[]> aads, int i)
+            throws GeneralSecurityException {
+        return CryptoUtil.decrypt(blobs.get(i), keys.get(i), aads != null ? aads.get(i) : null);
+    }
+}
@@ -2,26 +2,49 @@ package com.passwordmanager.crypto;
 
 import javax.crypto.*;
 import javax.crypto.spec.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.spec.*;
 import java.util.Arrays;
+import java.util.List;
 
 /**
- * AES-256-GCM encryption / decryption + PBKDF2 key derivation.
+ * AEAD encryption / decryption (AES-256-GCM or ChaCha20-Poly1305) + PBKDF2 key derivation.
  *
- * Ciphertext format on disk: [ 12-byte IV | ciphertext+GCM-tag ]
- * The GCM tag (16 bytes) is appended by the JCE cipher automatically.
+ * Ciphertext format on disk: [ 1-byte suite id | 12-byte nonce | ciphertext+tag ]
+ * The 16-byte tag is appended by the JCE cipher automatically. Blobs written before
+ * suite ids existed are plain [ 12-byte IV | ciphertext+GCM-tag ] and still decrypt.
+ *
+ * Each thread keeps its own {@link Cipher} per suite and a seeded DRBG, so bulk field
+ * decryption pays the provider lookup and RNG seeding once per thread
+ * instead of once per value.
  */
 public final class CryptoUtil {
 
     private static final String ALGORITHM        = "AES";
-    private static final String CIPHER_TRANSFORM = "AES/GCM/NoPadding";
-    private static final int    GCM_IV_LEN       = 12;   // bytes
-    private static final int    GCM_TAG_BITS     = 128;  // bits
+    private static final int    NONCE_LEN        = CipherSuite.NONCE_LEN;     // bytes
+    private static final int    TAG_LEN          = CipherSuite.TAG_BITS / 8;  // bytes
+    private static final int    HEADER_LEN       = 1 + NONCE_LEN;             // suite id + nonce
     private static final int    KEY_BITS         = 256;
     private static final String KDF_ALGORITHM    = "PBKDF2WithHmacSHA256";
 
+    // ── Hex codec tables ──────────────────────────────────────────────────────
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(HEX_DIGITS[i])] = (byte) i;
+        }
+    }
+
+    // ── Per-thread engine (ciphers live in CipherSuite) ───────────────────────
+    private static final ThreadLocal<SecureRandom> DRBG = ThreadLocal.withInitial(CryptoUtil::newDrbg);
+
     private CryptoUtil() {}
 
     // ── Key derivation ────────────────────────────────────────────────────────
@@ -42,23 +65,95 @@ public final class CryptoUtil {
         }
     }
 
+    // ── Envelope keys ─────────────────────────────────────────────────────────
+
+    /** Generates a random 256-bit AES data-encryption key. */
+    public static SecretKey generateDataKey() {
+        byte[] keyBytes = new byte[KEY_BITS / 8];
+        DRBG.get().nextBytes(keyBytes);
+        return new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    /**
+     * Wraps a data key under a key-encryption key (same AEAD blob layout as {@link #encrypt}).
+     * The GCM tag doubles as the password check on unwrap.
+     */
+    public static byte[] wrapKey(SecretKey dataKey, SecretKey kek) throws GeneralSecurityException {
+        return encrypt(dataKey.getEncoded(), kek);
+    }
+
+    /** Unwraps a data key produced by {@link #wrapKey}; throws if {@code kek} is wrong. */
+    public static SecretKey unwrapKey(byte[] wrapped, SecretKey kek) throws GeneralSecurityException {
+        return new SecretKeySpec(decrypt(wrapped, kek), ALGORITHM);
+    }
+
     // ── Encryption ────────────────────────────────────────────────────────────
 
-    /** Encrypts raw bytes. Returns {@code IV || ciphertext+tag}. */
+    /** Encrypts raw bytes. Returns {@code suite || nonce || ciphertext+tag}. */
     public static byte[] encrypt(byte[] plaintext, SecretKey key) throws GeneralSecurityException {
-        byte[] iv = new byte[GCM_IV_LEN];
-        new SecureRandom().nextBytes(iv);
+        return encrypt(plaintext, key, null);
+    }
 
-        Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORM);
-        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
-        byte[] cipherAndTag = cipher.doFinal(plaintext);
+    /**
+     * Encrypts raw bytes with additional authenticated data. The AAD is not stored; the blob
+     * only decrypts when the same AAD is passed to {@link #decrypt(byte[], SecretKey, byte[])}.
+     */
+    public static byte[] encrypt(byte[] plaintext, SecretKey key, byte[] aad) throws GeneralSecurityException {
+        CipherSuite suite = CipherSuite.forWrites();
+        byte[] result = new byte[encryptedLength(plaintext.length)];
+        result[0] = suite.id();
+        byte[] nonce = new byte[NONCE_LEN];
+        DRBG.get().nextBytes(nonce);
+        System.arraycopy(nonce, 0, result, 1, NONCE_LEN);
 
-        byte[] result = new byte[iv.length + cipherAndTag.length];
-        System.arraycopy(iv, 0, result, 0, iv.length);
-        System.arraycopy(cipherAndTag, 0, result, iv.length, cipherAndTag.length);
+        // Write the ciphertext straight into the result – no intermediate copy
+        Cipher cipher = suite.cipher();
+        cipher.init(Cipher.ENCRYPT_MODE, suite.keyFor(key), suite.params(nonce, 0));
+        if (aad != null) cipher.updateAAD(aad);
+        cipher.doFinal(plaintext, 0, plaintext.length, result, HEADER_LEN);
         return result;
     }
 
+    /**
+     * Encrypts the remaining bytes of {@code src} into {@code dst} as {@code suite || nonce || ciphertext+tag}.
+     * Both buffers advance by the bytes consumed / produced.
+     *
+     * @return number of bytes written to {@code dst}
+     */
+    public static int encrypt(ByteBuffer src, ByteBuffer dst, SecretKey key) throws GeneralSecurityException {
+        if (dst.remaining() < encryptedLength(src.remaining())) {
+            throw new ShortBufferException("Destination buffer too small");
+        }
+        CipherSuite suite = CipherSuite.forWrites();
+        byte[] nonce = new byte[NONCE_LEN];
+        DRBG.get().nextBytes(nonce);
+
+        Cipher cipher = suite.cipher();
+        cipher.init(Cipher.ENCRYPT_MODE, suite.keyFor(key), suite.params(nonce, 0));
+        dst.put(suite.id()).put(nonce);
+        return HEADER_LEN + cipher.doFinal(src, dst);
+    }
+
+    /**
+     * Returns a stream that encrypts everything written to it into {@code out} as one
+     * {@code suite || nonce || ciphertext+tag} blob – the same layout as {@link #encrypt},
+     * without holding the plaintext in memory. Closing the stream writes the tag and
+     * closes {@code out}. The cipher is not the per-thread instance, so the stream can
+     * outlive other encrypt calls on this thread.
+     */
+    public static OutputStream encryptingStream(OutputStream out, SecretKey key)
+            throws GeneralSecurityException, IOException {
+        CipherSuite suite = CipherSuite.forWrites();
+        byte[] nonce = new byte[NONCE_LEN];
+        DRBG.get().nextBytes(nonce);
+
+        Cipher cipher = suite.newCipher();
+        cipher.init(Cipher.ENCRYPT_MODE, suite.keyFor(key), suite.params(nonce, 0));
+        out.write(suite.id());
+        out.write(nonce);
+        return new CipherOutputStream(out, cipher);
+    }
+
     /** Convenience: encrypt a UTF-8 string. */
     public static byte[] encryptString(String plaintext, SecretKey key) throws GeneralSecurityException {
         return encrypt(plaintext.getBytes(StandardCharsets.UTF_8), key);
@@ -66,20 +161,137 @@ public final class CryptoUtil {
 
     // ── Decryption ────────────────────────────────────────────────────────────
 
-    /** Decrypts {@code IV || ciphertext+tag} back to raw bytes. */
-    public static byte[] decrypt(byte[] ivAndCipher, SecretKey key) throws GeneralSecurityException {
-        if (ivAndCipher.length <= GCM_IV_LEN) throw new IllegalArgumentException("Ciphertext too short");
-        byte[] iv         = Arrays.copyOfRange(ivAndCipher, 0, GCM_IV_LEN);
-        byte[] cipherText = Arrays.copyOfRange(ivAndCipher, GCM_IV_LEN, ivAndCipher.length);
+    /** Decrypts a blob written by {@link #encrypt} (or a legacy header-less AES-GCM blob). */
+    public static byte[] decrypt(byte[] blob, SecretKey key) throws GeneralSecurityException {
+        return decrypt(blob, 0, blob.length, key, null);
+    }
+
+    /** Decrypts a blob written by {@link #encrypt(byte[], SecretKey, byte[])} with the same AAD. */
+    public static byte[] decrypt(byte[] blob, SecretKey key, byte[] aad) throws GeneralSecurityException {
+        return decrypt(blob, 0, blob.length, key, aad);
+    }
 
-        Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORM);
-        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
-        return cipher.doFinal(cipherText);
+    /**
+     * Decrypts a blob from the remaining bytes of {@code src} straight into {@code dst} – no
+     * intermediate plaintext array. Both buffers advance by the bytes consumed / produced;
+     * on failure (including a too-small {@code dst}) neither has moved.
+     *
+     * @return number of plaintext bytes written to {@code dst}
+     */
+    public static int decrypt(ByteBuffer src, ByteBuffer dst, SecretKey key) throws GeneralSecurityException {
+        int len = src.remaining();
+        if (len <= NONCE_LEN) throw new IllegalArgumentException("Ciphertext too short");
+        if (dst.remaining() < len - NONCE_LEN - TAG_LEN) {
+            throw new ShortBufferException("Destination buffer too small");
+        }
+
+        int srcStart = src.position(), dstStart = dst.position();
+        CipherSuite suite = len > HEADER_LEN ? CipherSuite.byId(src.get(srcStart)) : null;
+        try {
+            if (suite != null) {
+                try {
+                    return decrypt(suite, src, srcStart + 1, dst, key);
+                } catch (AEADBadTagException e) {
+                    // A legacy blob whose random IV happens to start with a suite id
+                    src.position(srcStart);
+                    dst.position(dstStart);
+                    try { return decrypt(CipherSuite.AES_GCM, src, srcStart, dst, key); }
+                    catch (GeneralSecurityException legacyFailed) { throw e; }
+                }
+            }
+            return decrypt(CipherSuite.AES_GCM, src, srcStart, dst, key);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            src.position(srcStart);
+            dst.position(dstStart);
+            throw e;
+        }
     }
 
     /** Convenience: decrypt to a UTF-8 string. */
-    public static String decryptString(byte[] ivAndCipher, SecretKey key) throws GeneralSecurityException {
-        return new String(decrypt(ivAndCipher, key), StandardCharsets.UTF_8);
+    public static String decryptString(byte[] blob, SecretKey key) throws GeneralSecurityException {
+        return new String(decrypt(blob, key), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decrypts many blobs in parallel on the {@link CryptoExecutor} pool.
+     * Output order matches input order; fails on the first tag mismatch.
+     */
+    public static List<byte[]> decryptAll(List<byte[]> blobs, SecretKey key) throws GeneralSecurityException {
+        return CryptoExecutor.decryptAll(blobs, key);
+    }
+
+    /** Bulk decryption with one key per blob (rows spanning several key versions). */
+    public static List<byte[]> decryptAll(List<byte[]> blobs, List<SecretKey> keys) throws GeneralSecurityException {
+        return CryptoExecutor.decryptAll(blobs, keys, null);
+    }
+
+    /** Bulk decryption with one key and one AAD per blob. */
+    public static List<byte[]> decryptAll(List<byte[]> blobs, List<SecretKey> keys, List<byte[]> aads)
+            throws GeneralSecurityException {
+        return CryptoExecutor.decryptAll(blobs, keys, aads);
+    }
+
+    /** Size of {@code suite || nonce || ciphertext+tag} for a plaintext of the given length. */
+    public static int encryptedLength(int plaintextLength) {
+        return HEADER_LEN + plaintextLength + TAG_LEN;
+    }
+
+    /** Reads the suite header at {@code off}; falls back to the legacy {@code IV || ciphertext+tag} layout. */
+    private static byte[] decrypt(byte[] buf, int off, int len, SecretKey key, byte[] aad)
+            throws GeneralSecurityException {
+        if (len <= NONCE_LEN) throw new IllegalArgumentException("Ciphertext too short");
+
+        CipherSuite suite = len > HEADER_LEN ? CipherSuite.byId(buf[off]) : null;
+        if (suite != null) {
+            try {
+                return decrypt(suite, buf, off + 1, off + len, key, aad);
+            } catch (AEADBadTagException e) {
+                // A legacy blob whose random IV happens to start with a suite id
+                try { return decrypt(CipherSuite.AES_GCM, buf, off, off + len, key, aad); }
+                catch (GeneralSecurityException legacyFailed) { throw e; }
+            }
+        }
+        return decrypt(CipherSuite.AES_GCM, buf, off, off + len, key, aad);
+    }
+
+    /** Decrypts {@code nonce || ciphertext+tag} in {@code buf[from, to)} with the given suite, in place. */
+    private static byte[] decrypt(CipherSuite suite, byte[] buf, int from, int to, SecretKey key, byte[] aad)
+            throws GeneralSecurityException {
+        Cipher cipher = suite.cipher();
+        cipher.init(Cipher.DECRYPT_MODE, suite.keyFor(key), suite.params(buf, from));
+        if (aad != null) cipher.updateAAD(aad);
+        int ctOff = from + NONCE_LEN;
+        return cipher.doFinal(buf, ctOff, to - ctOff);
+    }
+
+    /** Decrypts {@code nonce || ciphertext+tag} starting at {@code nonceAt} in {@code src} into {@code dst}. */
+    private static int decrypt(CipherSuite suite, ByteBuffer src, int nonceAt, ByteBuffer dst, SecretKey key)
+            throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_LEN];
+        src.get(nonceAt, nonce);
+        src.position(nonceAt + NONCE_LEN);
+        Cipher cipher = suite.cipher();
+        cipher.init(Cipher.DECRYPT_MODE, suite.keyFor(key), suite.params(nonce, 0));
+        return cipher.doFinal(src, dst);
+    }
+
+    /**
+     * Encrypt+decrypt round trips used by the {@link CipherSuite} startup benchmark. Each
+     * step takes its cipher from {@link CipherSuite#cipher()} exactly as encrypt/decrypt do,
+     * so a suite that can't re-init one instance with the same key and nonce gets a fresh one.
+     */
+    static void benchmarkRoundTrip(CipherSuite suite, byte[] data, SecretKey key, int rounds)
+            throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_LEN];
+        for (int i = 0; i < rounds; i++) {
+            DRBG.get().nextBytes(nonce);
+            Cipher enc = suite.cipher();
+            enc.init(Cipher.ENCRYPT_MODE, suite.keyFor(key), suite.params(nonce, 0));
+            byte[] ct = enc.doFinal(data);
+            Cipher dec = suite.cipher();
+            dec.init(Cipher.DECRYPT_MODE, suite.keyFor(key), suite.params(nonce, 0));
+            dec.doFinal(ct);
+        }
     }
 
     // ── Random helpers ────────────────────────────────────────────────────────
@@ -87,25 +299,48 @@ public final class CryptoUtil {
     /** Generates a 16-byte random salt suitable for key derivation. */
     public static byte[] generateSalt() {
         byte[] salt = new byte[16];
-        new SecureRandom().nextBytes(salt);
+        DRBG.get().nextBytes(salt);
         return salt;
     }
 
     // ── Hex utilities ─────────────────────────────────────────────────────────
 
+    /** Lower-case hex; one table lookup per nibble, no per-byte allocation. */
     public static String toHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) sb.append(String.format("%02x", b));
-        return sb.toString();
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            out[i * 2]     = HEX_DIGITS[b >>> 4];
+            out[i * 2 + 1] = HEX_DIGITS[b & 0x0F];
+        }
+        return new String(out);
     }
 
+    /** Decodes upper- or lower-case hex. */
     public static byte[] fromHex(String hex) {
         if (hex.length() % 2 != 0) throw new IllegalArgumentException("Odd hex string length");
         byte[] out = new byte[hex.length() / 2];
         for (int i = 0; i < out.length; i++) {
-            out[i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4)
-                           |  Character.digit(hex.charAt(i * 2 + 1), 16));
+            int hi = hexValue(hex.charAt(i * 2));
+            int lo = hexValue(hex.charAt(i * 2 + 1));
+            out[i] = (byte) ((hi << 4) | lo);
         }
         return out;
     }
+
+    private static int hexValue(char c) {
+        int v = c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+        if (v < 0) throw new IllegalArgumentException("Invalid hex character: " + c);
+        return v;
+    }
+
+    // ── Engine bootstrap ──────────────────────────────────────────────────────
+
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
 }
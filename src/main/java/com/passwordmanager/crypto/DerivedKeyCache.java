@@ -0,0 +1,90 @@
+package com.passwordmanager.crypto;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.*;
+
+/**
+ * Small LRU cache of password-derived keys (export/import files), so a batch of exports
+ * or imports with the same password pays for PBKDF2 once.
+ *
+ * Entries are keyed by salt, iteration count and an HMAC fingerprint of the password
+ * under a random per-session secret – the password itself is never stored. Key bytes
+ * are held in arrays that {@link #wipe()} zeroes; callers get a fresh copy each time.
+ */
+public final class DerivedKeyCache {
+
+    private static final int    MAX_ENTRIES = 8;
+    private static final String HMAC        = "HmacSHA256";
+
+    /** Salt + derived key for writing a new export file. */
+    public record SaltedKey(byte[] salt, int iterations, SecretKey key) {}
+
+    private final LinkedHashMap<String, byte[]> keys = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            if (size() <= MAX_ENTRIES) return false;
+            Arrays.fill(eldest.getValue(), (byte) 0);
+            return true;
+        }
+    };
+
+    private byte[] fingerprintSecret = newSecret();
+    private byte[] exportSalt;           // reused by every export of this session
+
+    /** Derives (or returns the cached) PBKDF2 key for {@code password} + {@code salt}. */
+    public synchronized SecretKey derive(char[] password, byte[] salt, int iterations)
+            throws GeneralSecurityException {
+        String id = CryptoUtil.toHex(salt) + ':' + iterations + ':' + fingerprint(password);
+        byte[] cached = keys.get(id);
+        if (cached == null) {
+            cached = CryptoUtil.deriveKey(password, salt, iterations).getEncoded();
+            keys.put(id, cached);
+        }
+        return new SecretKeySpec(cached, "AES");
+    }
+
+    /**
+     * Salt and key for a new export file. Exports in the same session share one salt,
+     * so only the first one runs the KDF; each file still gets its own random nonce.
+     */
+    public SaltedKey forExport(char[] password, int iterations) throws GeneralSecurityException {
+        byte[] salt;
+        synchronized (this) {
+            if (exportSalt == null) exportSalt = CryptoUtil.generateSalt();
+            salt = exportSalt.clone();
+        }
+        return new SaltedKey(salt, iterations, derive(password, salt, iterations));
+    }
+
+    /** Zeroes every cached key and forgets the session's fingerprint secret and export salt. */
+    public synchronized void wipe() {
+        keys.values().forEach(k -> Arrays.fill(k, (byte) 0));
+        keys.clear();
+        Arrays.fill(fingerprintSecret, (byte) 0);
+        fingerprintSecret = newSecret();
+        exportSalt        = null;
+    }
+
+    private String fingerprint(char[] password) throws GeneralSecurityException {
+        ByteBuffer utf8 = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        byte[] bytes = new byte[utf8.remaining()];
+        utf8.get(bytes);
+        Arrays.fill(utf8.array(), (byte) 0);
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(fingerprintSecret, HMAC));
+            return CryptoUtil.toHex(mac.doFinal(bytes));
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    private static byte[] newSecret() {
+        return CryptoUtil.generateDataKey().getEncoded();   // 32 random bytes
+    }
+}
@@ -0,0 +1,54 @@
+package com.passwordmanager.crypto;
+
+import java.util.*;
+
+/**
+ * Compares unlock latency of the vault KDFs on this machine.
+ *
+ * Run with:
+ *   mvn -q compile exec:java -Dexec.mainClass=com.passwordmanager.crypto.KdfBenchmark
+ *   (or java -cp target/classes:... com.passwordmanager.crypto.KdfBenchmark [pbkdf2Iters] [argonMemKib] [argonIters])
+ *
+ * PBKDF2 runs at the given iteration count. Argon2id runs at the same memory and
+ * iteration settings with 1 lane and with one lane per core, which shows how much
+ * of the parallel work fits into the same wall-clock budget.
+ */
+public final class KdfBenchmark {
+
+    private static final int WARMUP_RUNS   = 1;
+    private static final int MEASURED_RUNS = 5;
+
+    private KdfBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int pbkdf2Iters = args.length > 0 ? Integer.parseInt(args[0]) : KdfCalibrator.MIN_ITERATIONS;
+        int memoryKib   = args.length > 1 ? Integer.parseInt(args[1]) : 64 * 1024;
+        int argonIters  = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int cores       = Runtime.getRuntime().availableProcessors();
+
+        List<KeyDerivation> kdfs = new ArrayList<>();
+        kdfs.add(new Pbkdf2KeyDerivation(pbkdf2Iters));
+        kdfs.add(new Argon2idKeyDerivation(argonIters, memoryKib, 1));
+        if (cores > 1) kdfs.add(new Argon2idKeyDerivation(argonIters, memoryKib, cores));
+
+        System.out.printf("cores=%d, runs=%d (median reported)%n", cores, MEASURED_RUNS);
+        for (KeyDerivation kdf : kdfs) {
+            System.out.printf("%-14s %-60s %8.1f ms%n", kdf.id(), kdf.parameters(), medianMillis(kdf));
+        }
+    }
+
+    private static double medianMillis(KeyDerivation kdf) throws Exception {
+        char[] password = "benchmark-password".toCharArray();
+        byte[] salt     = CryptoUtil.generateSalt();
+        for (int i = 0; i < WARMUP_RUNS; i++) kdf.derive(password, salt);
+
+        double[] samples = new double[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            kdf.derive(password, salt);
+            samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(samples);
+        return samples[MEASURED_RUNS / 2];
+    }
+}
@@ -0,0 +1,59 @@
+package com.passwordmanager.crypto;
+
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks a PBKDF2 iteration count that makes {@link CryptoUtil#deriveKey} take roughly
+ * a target wall-clock time on the current machine.
+ *
+ * A short probe run is timed (best of a few, after a warm-up) and scaled linearly –
+ * PBKDF2 cost is linear in the iteration count. The result is clamped to a safe
+ * floor so slow machines never drop below it, and memoised per target for the run.
+ */
+public final class KdfCalibrator {
+
+    /** Never go below this, however slow the machine. */
+    public static final int MIN_ITERATIONS = 200_000;
+
+    private static final int MAX_ITERATIONS   = 10_000_000;
+    private static final int PROBE_ITERATIONS = 20_000;
+    private static final int PROBE_RUNS       = 3;
+    private static final int ROUND_TO         = 10_000;
+
+    private static final Map<Long, Integer> CACHE = new ConcurrentHashMap<>();
+
+    private KdfCalibrator() {}
+
+    /**
+     * @param targetMillis  desired key-derivation time
+     * @param minIterations floor (values below {@link #MIN_ITERATIONS} are raised to it)
+     * @return iteration count to store in vault_meta.kdf_iterations
+     */
+    public static int calibrate(long targetMillis, int minIterations) {
+        int floor = Math.max(minIterations, MIN_ITERATIONS);
+        int iters = CACHE.computeIfAbsent(targetMillis, KdfCalibrator::measure);
+        return Math.max(floor, iters);
+    }
+
+    private static int measure(long targetMillis) {
+        char[] password = "calibration-probe".toCharArray();
+        byte[] salt     = CryptoUtil.generateSalt();
+        try {
+            CryptoUtil.deriveKey(password, salt, PROBE_ITERATIONS); // warm-up (JIT, provider lookup)
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < PROBE_RUNS; i++) {
+                long start = System.nanoTime();
+                CryptoUtil.deriveKey(password, salt, PROBE_ITERATIONS);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            double perIterNanos = (double) best / PROBE_ITERATIONS;
+            long   iters        = (long) (targetMillis * 1_000_000L / perIterNanos);
+            iters = (iters / ROUND_TO) * ROUND_TO;
+            return (int) Math.min(MAX_ITERATIONS, Math.max(ROUND_TO, iters));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("KDF calibration failed", e);
+        }
+    }
+}
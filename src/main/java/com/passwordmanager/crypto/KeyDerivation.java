@@ -0,0 +1,42 @@
+package com.passwordmanager.crypto;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+
+/**
+ * A password-based key derivation function plus its cost parameters.
+ *
+ * The id and parameters are persisted in vault_meta next to the salt, so every
+ * vault remembers how its key-encryption key was derived. Vaults created before
+ * this was introduced carry no {@code kdf_id} and are read as PBKDF2.
+ */
+public interface KeyDerivation {
+
+    String META_KDF_ID = "kdf_id";
+
+    /** Identifier stored in vault_meta.kdf_id. */
+    String id();
+
+    /**
+     * Derives a 256-bit AES key. The caller is responsible for clearing {@code password}.
+     */
+    SecretKey derive(char[] password, byte[] salt) throws GeneralSecurityException;
+
+    /** Cost parameters to persist (meta key → value), excluding the id and salt. */
+    Map<String, String> parameters();
+
+    /** Rebuilds the KDF recorded in vault_meta ({@code id} may be null for legacy vaults). */
+    static KeyDerivation fromMeta(String id, Map<String, String> meta) {
+        if (id == null || id.equals(Pbkdf2KeyDerivation.ID)) {
+            return new Pbkdf2KeyDerivation(Integer.parseInt(meta.get(Pbkdf2KeyDerivation.META_ITERATIONS)));
+        }
+        if (id.equals(Argon2idKeyDerivation.ID)) {
+            return new Argon2idKeyDerivation(
+                    Integer.parseInt(meta.get(Argon2idKeyDerivation.META_ITERATIONS)),
+                    Integer.parseInt(meta.get(Argon2idKeyDerivation.META_MEMORY_KIB)),
+                    Integer.parseInt(meta.get(Argon2idKeyDerivation.META_PARALLELISM)));
+        }
+        throw new IllegalArgumentException("Unknown KDF: " + id);
+    }
+}
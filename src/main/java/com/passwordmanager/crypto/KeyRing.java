@@ -0,0 +1,69 @@
+package com.passwordmanager.crypto;
+
+import javax.crypto.SecretKey;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The unlocked vault data keys, indexed by key version.
+ *
+ * Acts as a {@link SecretKey} for the current version, so existing callers that
+ * only encrypt keep working unchanged. Readers of versioned rows resolve the
+ * right key with {@link #resolve(SecretKey, int)}; while a key rotation is running
+ * the ring holds both the old and the new version.
+ */
+public final class KeyRing implements SecretKey {
+
+    private static final long serialVersionUID = 1L;
+
+    // Read by the background rotation job while the UI thread may add/remove versions
+    private final ConcurrentSkipListMap<Integer, SecretKey> keys = new ConcurrentSkipListMap<>();
+
+    public KeyRing(int version, SecretKey key) {
+        keys.put(version, key);
+    }
+
+    /** Adds (or replaces) a version. The highest version is always the current one. */
+    public void put(int version, SecretKey key) { keys.put(version, key); }
+
+    public void remove(int version) { keys.remove(version); }
+
+    public int currentVersion() { return keys.lastKey(); }
+
+    public SecretKey current() { return keys.lastEntry().getValue(); }
+
+    /** All versions held by this ring, oldest first. */
+    public Set<Integer> versions() { return Collections.unmodifiableSet(keys.keySet()); }
+
+    public SecretKey forVersion(int version) {
+        SecretKey key = keys.get(version);
+        if (key == null) throw new IllegalStateException("No data key loaded for key version " + version);
+        return key;
+    }
+
+    // ── Static helpers for DAO code that receives a plain SecretKey ───────────
+
+    /** Returns the key for {@code version} if {@code key} is a ring, otherwise {@code key} itself. */
+    public static SecretKey resolve(SecretKey key, int version) {
+        return key instanceof KeyRing ring ? ring.forVersion(version) : key;
+    }
+
+    /**
+     * True while {@code key} is a ring holding more than one version, i.e. a key rotation
+     * is in progress and rows are being rewritten from one version to the next.
+     */
+    public static boolean isRotating(SecretKey key) {
+        return key instanceof KeyRing ring && ring.keys.size() > 1;
+    }
+
+    /** Version that new writes under {@code key} should be tagged with. */
+    public static int versionOf(SecretKey key) {
+        return key instanceof KeyRing ring ? ring.currentVersion() : 1;
+    }
+
+    // ── SecretKey (delegates to the current version) ──────────────────────────
+
+    @Override public String getAlgorithm() { return current().getAlgorithm(); }
+    @Override public String getFormat()    { return current().getFormat(); }
+    @Override public byte[] getEncoded()   { return current().getEncoded(); }
+}
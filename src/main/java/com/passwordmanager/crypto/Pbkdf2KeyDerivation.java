@@ -0,0 +1,32 @@
+package com.passwordmanager.crypto;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+
+/** PBKDF2WithHmacSHA256 – the original (single-threaded) vault KDF. */
+public final class Pbkdf2KeyDerivation implements KeyDerivation {
+
+    public static final String ID              = "PBKDF2-SHA256";
+    public static final String META_ITERATIONS = "kdf_iterations";
+
+    private final int iterations;
+
+    public Pbkdf2KeyDerivation(int iterations) {
+        this.iterations = iterations;
+    }
+
+    @Override public String id() { return ID; }
+
+    @Override
+    public SecretKey derive(char[] password, byte[] salt) throws GeneralSecurityException {
+        return CryptoUtil.deriveKey(password, salt, iterations);
+    }
+
+    @Override
+    public Map<String, String> parameters() {
+        return Map.of(META_ITERATIONS, String.valueOf(iterations));
+    }
+
+    public int getIterations() { return iterations; }
+}
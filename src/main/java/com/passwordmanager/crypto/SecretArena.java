@@ -0,0 +1,95 @@
+package com.passwordmanager.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Wipeable storage for decrypted secrets, owned by the unlocked session.
+ *
+ * Plaintext is decoded straight from the decrypted UTF-8 bytes into shared {@code char[]}
+ * slabs and handed out as {@link SecretChars} views, instead of one immutable String per
+ * value. {@link #wipe()} zeroes every slab in one pass; views taken before the wipe throw
+ * on access afterwards.
+ *
+ * Short-lived work (an audit run) should use {@link #openScope()}: the scope is wiped
+ * when closed, and also by a wipe of its parent if the vault is locked mid-run.
+ */
+public final class SecretArena implements AutoCloseable {
+
+    private static final int SLAB_CHARS = 16 * 1024;
+
+    private final SecretArena       parent;
+    private final List<char[]>      slabs    = new ArrayList<>();
+    private final List<SecretArena> children = new ArrayList<>();
+    private char[] current;
+    private int    used;
+    private volatile int generation;   // read lock-free by every view access
+
+    public SecretArena() { this(null); }
+
+    private SecretArena(SecretArena parent) { this.parent = parent; }
+
+    /** Decodes {@code len} UTF-8 bytes at {@code off} into the arena. The source is not modified. */
+    public synchronized SecretChars decode(byte[] utf8, int off, int len) {
+        // UTF-8 never yields more chars than bytes
+        if (len > SLAB_CHARS / 4) {
+            char[] slab = new char[len];     // large value: dedicated slab
+            slabs.add(slab);
+            return decodeInto(slab, 0, utf8, off, len);
+        }
+        if (current == null || SLAB_CHARS - used < len) {
+            current = new char[SLAB_CHARS];
+            used    = 0;
+            slabs.add(current);
+        }
+        SecretChars view = decodeInto(current, used, utf8, off, len);
+        used += view.length();
+        return view;
+    }
+
+    public SecretChars decode(byte[] utf8) { return decode(utf8, 0, utf8.length); }
+
+    /** A child arena for temporary secrets; close it to wipe them early. */
+    public synchronized SecretArena openScope() {
+        SecretArena scope = new SecretArena(this);
+        children.add(scope);
+        return scope;
+    }
+
+    /** Zeroes all slabs (including open scopes) and invalidates every view handed out. */
+    public void wipe() {
+        List<SecretArena> open;
+        synchronized (this) {
+            for (char[] slab : slabs) Arrays.fill(slab, '\0');
+            slabs.clear();
+            current = null;
+            used    = 0;
+            generation++;
+            open = new ArrayList<>(children);
+        }
+        open.forEach(SecretArena::wipe);
+    }
+
+    /** Wipes this scope and detaches it from its parent. */
+    @Override
+    public void close() {
+        wipe();
+        if (parent != null) {
+            synchronized (parent) { parent.children.remove(this); }
+        }
+    }
+
+    int generation() { return generation; }
+
+    private SecretChars decodeInto(char[] slab, int start, byte[] utf8, int off, int len) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer out = CharBuffer.wrap(slab, start, slab.length - start);
+        decoder.decode(ByteBuffer.wrap(utf8, off, len), out, true);
+        decoder.flush(out);
+        return new SecretChars(this, generation, slab, start, out.position() - start);
+    }
+}
@@ -0,0 +1,77 @@
+package com.passwordmanager.crypto;
+
+import java.util.Arrays;
+
+/**
+ * A read-only view of a decrypted value held in a {@link SecretArena}.
+ *
+ * Equality and hash code are by content, so views can be compared or used as map keys
+ * without materialising Strings. {@link #toString()} copies the value onto the heap and
+ * should only be called where a String is unavoidable (UI controls, clipboard).
+ */
+public final class SecretChars implements CharSequence {
+
+    private final SecretArena arena;
+    private final int         generation;
+    private final char[]      slab;
+    private final int         offset;
+    private final int         length;
+
+    SecretChars(SecretArena arena, int generation, char[] slab, int offset, int length) {
+        this.arena      = arena;
+        this.generation = generation;
+        this.slab       = slab;
+        this.offset     = offset;
+        this.length     = length;
+    }
+
+    @Override public int length() { return length; }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+        checkLive();
+        return slab[offset + index];
+    }
+
+    @Override
+    public SecretChars subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) throw new IndexOutOfBoundsException();
+        return new SecretChars(arena, generation, slab, offset + start, end - start);
+    }
+
+    public boolean isBlank() {
+        checkLive();
+        for (int i = 0; i < length; i++) if (!Character.isWhitespace(slab[offset + i])) return false;
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SecretChars other) || other.length != length) return false;
+        checkLive();
+        other.checkLive();
+        return Arrays.equals(slab, offset, offset + length,
+                             other.slab, other.offset, other.offset + length);
+    }
+
+    @Override
+    public int hashCode() {
+        checkLive();
+        int h = 0;
+        for (int i = 0; i < length; i++) h = 31 * h + slab[offset + i];
+        return h;
+    }
+
+    /** Copies the value into a new heap String. */
+    @Override
+    public String toString() {
+        checkLive();
+        return new String(slab, offset, length);
+    }
+
+    private void checkLive() {
+        if (arena.generation() != generation) throw new IllegalStateException("Secret was wiped");
+    }
+}
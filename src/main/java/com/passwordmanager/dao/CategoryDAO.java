@@ -11,7 +11,7 @@ public class CategoryDAO {
     public List<Category> findAll() throws SQLException {
         List<Category> list = new ArrayList<>();
         String sql = "SELECT id, name FROM categories ORDER BY name";
-        try (Connection c = DatabaseManager.getConnection();
+        try (Connection c = DatabaseManager.getReadConnection();
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) list.add(map(rs));
@@ -0,0 +1,149 @@
+package com.passwordmanager.dao;
+
+import com.passwordmanager.db.DatabaseManager;
+import com.passwordmanager.model.EntryType;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory id ↔ name maps for the small lookup tables, so DAOs store and query
+ * integer ids and never join entry_types or field_keys just to get a name.
+ *
+ * Both tables are read in full once, by {@link #load()} at startup. Entry types are
+ * fixed; field keys are added on demand, in their own transaction so that an id is
+ * never cached for a row that a rolled-back save created. A key missing from the cache
+ * (never stored, or added by another client) costs one single-row lookup. Names are
+ * compared case-sensitively, in the table as in these maps.
+ */
+public final class Dictionaries {
+
+    private static volatile Map<Integer, EntryType> types;     // id → type
+    private static volatile Map<EntryType, Integer> typeIds;
+
+    private static final Map<String, Integer> FIELD_IDS   = new ConcurrentHashMap<>();
+    private static final Map<Integer, String> FIELD_NAMES = new ConcurrentHashMap<>();
+
+    private Dictionaries() {}
+
+    /** Reads both tables, replacing anything cached. Call once after the schema is migrated. */
+    public static synchronized void load() throws SQLException {
+        types   = null;
+        typeIds = null;
+        loadTypes();
+
+        FIELD_IDS.clear();
+        FIELD_NAMES.clear();
+        try (Connection c = DatabaseManager.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT id, name FROM field_keys");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) remember(rs.getInt("id"), rs.getString("name"));
+        }
+    }
+
+    // ── Entry types ───────────────────────────────────────────────────────────
+
+    static EntryType type(int id) throws SQLException {
+        EntryType type = loadTypes().get(id);
+        if (type == null) throw new IllegalStateException("Unknown entry type id: " + id);
+        return type;
+    }
+
+    static int typeId(EntryType type) throws SQLException {
+        Integer id = typeIds != null ? typeIds.get(type) : null;
+        if (id == null) {
+            loadTypes();
+            id = typeIds.get(type);
+        }
+        if (id == null) throw new IllegalStateException("Entry type missing from entry_types: " + type);
+        return id;
+    }
+
+    private static Map<Integer, EntryType> loadTypes() throws SQLException {
+        Map<Integer, EntryType> loaded = types;
+        if (loaded != null) return loaded;
+
+        Map<Integer, EntryType> byId   = new HashMap<>();
+        Map<EntryType, Integer> byType = new EnumMap<>(EntryType.class);
+        try (Connection c = DatabaseManager.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT id, name FROM entry_types");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                EntryType type = EntryType.from(rs.getString("name"));
+                byId.put(rs.getInt("id"), type);
+                byType.put(type, rs.getInt("id"));
+            }
+        }
+        typeIds = byType;
+        types   = byId;
+        return byId;
+    }
+
+    // ── Field keys ────────────────────────────────────────────────────────────
+
+    static String fieldKey(int id) throws SQLException {
+        String name = FIELD_NAMES.get(id);
+        if (name == null) {
+            // May have been added by another instance
+            lookupFieldKey("SELECT id, name FROM field_keys WHERE id = ?", ps -> ps.setInt(1, id));
+            name = FIELD_NAMES.get(id);
+        }
+        if (name == null) throw new IllegalStateException("Unknown field key id: " + id);
+        return name;
+    }
+
+    /** Id of {@code name}, or null if no field has ever been stored under it. */
+    static Integer existingFieldKeyId(String name) throws SQLException {
+        Integer id = FIELD_IDS.get(name);
+        if (id != null) return id;
+        return lookupFieldKey("SELECT id, name FROM field_keys WHERE name = ?", ps -> ps.setString(1, name));
+    }
+
+    /** Id of {@code name}, adding it to field_keys first if it is new. */
+    static int fieldKeyId(String name) throws SQLException {
+        Integer id = existingFieldKeyId(name);
+        if (id != null) return id;
+
+        try (Connection c = DatabaseManager.getAutonomousConnection()) {
+            try (PreparedStatement ps = c.prepareStatement("INSERT IGNORE INTO field_keys (name) VALUES (?)")) {
+                ps.setString(1, name);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = c.prepareStatement("SELECT id, name FROM field_keys WHERE name = ?")) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    id = rs.getInt("id");
+                    remember(id, rs.getString("name"));
+                }
+            }
+        }
+        return id;
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    /** Runs a single-row field_keys lookup and caches the row; returns its id, or null if absent. */
+    private static Integer lookupFieldKey(String sql, Binder binder) throws SQLException {
+        try (Connection c = DatabaseManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                int id = rs.getInt("id");
+                remember(id, rs.getString("name"));
+                return id;
+            }
+        }
+    }
+
+    private static void remember(int id, String name) {
+        FIELD_IDS.put(name, id);
+        FIELD_NAMES.put(id, name);
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.passwordmanager.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when saving an entry that another client changed or deleted after it was
+ * loaded – the save is rolled back rather than overwriting their edit.
+ */
+public class EntryConflictException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long entryId;
+
+    public EntryConflictException(long entryId) {
+        super("This entry was changed or deleted on another device since you opened it. "
+              + "Reopen it to see the latest version.");
+        this.entryId = entryId;
+    }
+
+    public long getEntryId() { return entryId; }
+}
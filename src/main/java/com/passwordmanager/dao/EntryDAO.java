@@ -15,11 +15,11 @@ public class EntryDAO {
                        boolean favorite, long now) throws SQLException {
         String sql = """
             INSERT INTO entries (type_id, title, category_id, favorite, created_at, updated_at)
-            VALUES ((SELECT id FROM entry_types WHERE name = ?), ?, ?, ?, ?, ?)
+            VALUES (?, ?, ?, ?, ?, ?)
             """;
         try (Connection c = DatabaseManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, type.name());
+            ps.setInt(1, Dictionaries.typeId(type));
             ps.setString(2, title);
             if (categoryId != null) ps.setLong(3, categoryId); else ps.setNull(3, Types.BIGINT);
             ps.setBoolean(4, favorite);
@@ -37,10 +37,9 @@ public class EntryDAO {
 
     public Entry findById(long id) throws SQLException {
         String sql = """
-            SELECT e.id, et.name AS type_name, e.title, e.category_id,
+            SELECT e.id, e.type_id, e.title, e.category_id,
                    e.favorite, e.created_at, e.updated_at
             FROM entries e
-            JOIN entry_types et ON et.id = e.type_id
             WHERE e.id = ?
             """;
         try (Connection c = DatabaseManager.getConnection();
@@ -52,103 +51,85 @@ public class EntryDAO {
         }
     }
 
-    /** Returns all entries as list items (no decryption needed). */
-    public List<EntryListItem> findAll() throws SQLException {
-        String sql = """
-            SELECT e.id, et.name AS type_name, e.title, c.name AS cat_name,
-                   e.favorite, e.updated_at
-            FROM entries e
-            JOIN entry_types et ON et.id = e.type_id
-            LEFT JOIN categories c ON c.id = e.category_id
-            ORDER BY e.title
-            """;
-        return queryListItems(sql);
-    }
-
-    /** Search by title (SQL LIKE). */
-    public List<EntryListItem> searchByTitle(String query) throws SQLException {
-        String sql = """
-            SELECT e.id, et.name AS type_name, e.title, c.name AS cat_name,
-                   e.favorite, e.updated_at
-            FROM entries e
-            JOIN entry_types et ON et.id = e.type_id
-            LEFT JOIN categories c ON c.id = e.category_id
-            WHERE e.title LIKE ?
-            ORDER BY e.title
-            """;
-        try (Connection c = DatabaseManager.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, "%" + query + "%");
-            return mapListItems(ps.executeQuery());
+    /**
+     * One page of list items matching {@code filter}, ordered by (title, id), starting
+     * after the given key (keyset pagination). Each such page is an index range scan,
+     * however deep into the list it is.
+     *
+     * Pass {@code afterTitle = null} to start at row {@code offset} instead – for the
+     * first page, or to jump far into the list without reading the pages in between.
+     */
+    public List<EntryListItem> findPage(EntryFilter filter, String afterTitle, long afterId,
+                                        int offset, int limit) throws SQLException {
+        String where = filterClause(filter);
+        if (afterTitle != null) {
+            where += (where.isEmpty() ? "WHERE " : " AND ")
+                   + "(e.title > ? OR (e.title = ? AND e.id > ?))";
         }
-    }
-
-    /** Filter by category id. */
-    public List<EntryListItem> findByCategory(int categoryId) throws SQLException {
         String sql = """
-            SELECT e.id, et.name AS type_name, e.title, c.name AS cat_name,
+            SELECT e.id, e.type_id, e.title, c.name AS cat_name,
                    e.favorite, e.updated_at
             FROM entries e
-            JOIN entry_types et ON et.id = e.type_id
             LEFT JOIN categories c ON c.id = e.category_id
-            WHERE e.category_id = ?
-            ORDER BY e.title
-            """;
-        try (Connection c = DatabaseManager.getConnection();
+            """
+            + where + " ORDER BY e.title, e.id LIMIT ? OFFSET ?";
+        try (Connection c = DatabaseManager.getReadConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, categoryId);
-            return mapListItems(ps.executeQuery());
+            int i = bindFilter(ps, filter);
+            if (afterTitle != null) {
+                ps.setString(i++, afterTitle);
+                ps.setString(i++, afterTitle);
+                ps.setLong(i++, afterId);
+            }
+            ps.setInt(i++, limit);
+            ps.setInt(i, afterTitle != null ? 0 : offset);
+            try (ResultSet rs = ps.executeQuery()) {
+                return mapListItems(rs);
+            }
         }
     }
 
-    /** Favorites only. */
-    public List<EntryListItem> findFavorites() throws SQLException {
-        String sql = """
-            SELECT e.id, et.name AS type_name, e.title, c.name AS cat_name,
-                   e.favorite, e.updated_at
-            FROM entries e
-            JOIN entry_types et ON et.id = e.type_id
-            LEFT JOIN categories c ON c.id = e.category_id
-            WHERE e.favorite = 1
-            ORDER BY e.title
-            """;
-        return queryListItems(sql);
-    }
-
-    /** All LOGIN entries – used by the audit service. */
-    public List<Entry> findAllLogins() throws SQLException {
-        String sql = """
-            SELECT e.id, et.name AS type_name, e.title, e.category_id,
-                   e.favorite, e.created_at, e.updated_at
-            FROM entries e
-            JOIN entry_types et ON et.id = e.type_id
-            WHERE et.name = 'LOGIN'
-            """;
-        List<Entry> list = new ArrayList<>();
-        try (Connection c = DatabaseManager.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) list.add(mapEntry(rs));
+    /** Number of entries matching {@code filter}. */
+    public int count(EntryFilter filter) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM entries e " + filterClause(filter);
+        try (Connection c = DatabaseManager.getReadConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            bindFilter(ps, filter);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
         }
-        return list;
     }
 
     // ── Update ────────────────────────────────────────────────────────────────
 
+    /**
+     * Compare-and-set update: succeeds only while the row is still at {@code expectedVersion},
+     * and bumps it. Inside a transaction the row then stays locked until commit, so the
+     * entry's fields and tags can be written after it without another client interleaving.
+     * The favourite flag is not part of an edit; it is only set by {@link #toggleFavorite}.
+     *
+     * @throws EntryConflictException if the entry was changed or deleted since it was read
+     */
     public void update(long id, String title, Long categoryId,
-                       boolean favorite, long now) throws SQLException {
-        String sql = "UPDATE entries SET title=?, category_id=?, favorite=?, updated_at=? WHERE id=?";
+                       long now, int expectedVersion) throws SQLException {
+        String sql = "UPDATE entries SET title=?, category_id=?, updated_at=?, version=version+1 "
+                   + "WHERE id=? AND version=?";
         try (Connection c = DatabaseManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, title);
             if (categoryId != null) ps.setLong(2, categoryId); else ps.setNull(2, Types.BIGINT);
-            ps.setBoolean(3, favorite);
-            ps.setLong(4, now);
-            ps.setLong(5, id);
-            ps.executeUpdate();
+            ps.setLong(3, now);
+            ps.setLong(4, id);
+            ps.setInt(5, expectedVersion);
+            if (ps.executeUpdate() == 0) throw new EntryConflictException(id);
         }
     }
 
+    /**
+     * Leaves the version alone: no edit writes the flag, so starring an entry while its
+     * edit dialog is open can neither be undone by that save nor make it conflict.
+     */
     public void toggleFavorite(long id, boolean favorite) throws SQLException {
         String sql = "UPDATE entries SET favorite=? WHERE id=?";
         try (Connection c = DatabaseManager.getConnection();
@@ -172,12 +153,23 @@ public class EntryDAO {
 
     // ── Helpers ───────────────────────────────────────────────────────────────
 
-    private List<EntryListItem> queryListItems(String sql) throws SQLException {
-        try (Connection c = DatabaseManager.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            return mapListItems(rs);
+    private static String filterClause(EntryFilter filter) {
+        return switch (filter.getKind()) {
+            case ALL       -> "";
+            case FAVORITES -> "WHERE e.favorite = 1";
+            case CATEGORY  -> "WHERE e.category_id = ?";
+            case SEARCH    -> "WHERE e.title LIKE ?";
+        };
+    }
+
+    /** Binds the filter's parameters and returns the next parameter index. */
+    private static int bindFilter(PreparedStatement ps, EntryFilter filter) throws SQLException {
+        switch (filter.getKind()) {
+            case CATEGORY -> ps.setInt(1, filter.getCategoryId());
+            case SEARCH   -> ps.setString(1, "%" + filter.getText() + "%");
+            default       -> { return 1; }
         }
+        return 2;
     }
 
     private List<EntryListItem> mapListItems(ResultSet rs) throws SQLException {
@@ -185,7 +177,7 @@ public class EntryDAO {
         while (rs.next()) {
             list.add(new EntryListItem(
                     rs.getLong("id"),
-                    EntryType.from(rs.getString("type_name")),
+                    Dictionaries.type(rs.getInt("type_id")),
                     rs.getString("title"),
                     rs.getString("cat_name"),
                     rs.getBoolean("favorite"),
@@ -196,12 +188,13 @@ public class EntryDAO {
     }
 
     private Entry mapEntry(ResultSet rs) throws SQLException {
-        long catId = rs.getLong("category_id");
+        long catId      = rs.getLong("category_id");
+        Long categoryId = rs.wasNull() ? null : catId;
         return new Entry(
                 rs.getLong("id"),
-                EntryType.from(rs.getString("type_name")),
+                Dictionaries.type(rs.getInt("type_id")),
                 rs.getString("title"),
-                rs.wasNull() ? null : catId,
+                categoryId,
                 rs.getBoolean("favorite"),
                 rs.getLong("created_at"),
                 rs.getLong("updated_at")
@@ -0,0 +1,86 @@
+package com.passwordmanager.dao;
+
+import com.passwordmanager.crypto.CryptoUtil;
+import com.passwordmanager.crypto.KeyRing;
+import com.passwordmanager.db.DatabaseManager;
+import com.passwordmanager.model.*;
+
+import javax.crypto.SecretKey;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Loads one entry with its category, tag names and decrypted fields in a single query,
+ * so opening an entry costs one round trip instead of one per table.
+ *
+ * Category is a LEFT JOIN, tags are folded into one column by a correlated GROUP_CONCAT
+ * and per-field rows (entries not yet migrated to a field record) are the only source
+ * of extra result rows.
+ */
+public class EntryDetailDAO {
+
+    /** Unit separator – cannot appear in a tag name typed into a text field. */
+    private static final String TAG_SEPARATOR = "\u001F";
+
+    private static final String SQL = """
+        SELECT e.id, e.type_id, e.title, e.favorite, e.created_at, e.updated_at, e.version,
+               c.name AS category_name, e.fields_enc, e.fields_key_version,
+               (SELECT GROUP_CONCAT(t.name ORDER BY t.name SEPARATOR '\u001F')
+                FROM entry_tags x JOIN tags t ON t.id = x.tag_id
+                WHERE x.entry_id = e.id) AS tag_names,
+               f.field_key_id, f.value_enc, f.key_version
+        FROM entries e
+        LEFT JOIN categories c   ON c.id = e.category_id
+        LEFT JOIN entry_fields f ON f.entry_id = e.id AND e.fields_enc IS NULL
+        WHERE e.id = ?
+        """;
+
+    /** @return the hydrated entry, or null if it does not exist */
+    public EntryDto findById(long entryId, SecretKey key) throws Exception {
+        try (Connection c = DatabaseManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(SQL)) {
+            ps.setLong(1, entryId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+
+                EntryDto dto = new EntryDto();
+                dto.setId(rs.getLong("id"));
+                dto.setType(Dictionaries.type(rs.getInt("type_id")));
+                dto.setTitle(rs.getString("title"));
+                dto.setFavorite(rs.getBoolean("favorite"));
+                dto.setCreatedAt(rs.getLong("created_at"));
+                dto.setUpdatedAt(rs.getLong("updated_at"));
+                dto.setVersion(rs.getInt("version"));
+                dto.setCategoryName(rs.getString("category_name"));
+
+                String tags = rs.getString("tag_names");
+                dto.setTags(tags != null
+                        ? new ArrayList<>(Arrays.asList(tags.split(TAG_SEPARATOR)))
+                        : new ArrayList<>());
+
+                byte[] record = rs.getBytes("fields_enc");
+                if (record != null) {
+                    SecretKey k = KeyRing.resolve(key, rs.getInt("fields_key_version"));
+                    byte[] plain = CryptoUtil.decrypt(record, k, FieldRecord.aad(entryId));
+                    try {
+                        dto.setFields(FieldRecord.decode(plain));
+                    } finally {
+                        Arrays.fill(plain, (byte) 0);
+                    }
+                    return dto;
+                }
+
+                // Legacy per-field layout: one row per field
+                Map<String, String> fields = new LinkedHashMap<>();
+                do {
+                    int fieldKeyId = rs.getInt("field_key_id");
+                    if (rs.wasNull()) continue;
+                    SecretKey k = KeyRing.resolve(key, rs.getInt("key_version"));
+                    fields.put(Dictionaries.fieldKey(fieldKeyId), CryptoUtil.decryptString(rs.getBytes("value_enc"), k));
+                } while (rs.next());
+                dto.setFields(fields);
+                return dto;
+            }
+        }
+    }
+}
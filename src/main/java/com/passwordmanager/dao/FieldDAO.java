@@ -1,41 +1,97 @@
 package com.passwordmanager.dao;
 
+import com.passwordmanager.config.ConfigLoader;
 import com.passwordmanager.crypto.CryptoUtil;
+import com.passwordmanager.crypto.KeyRing;
+import com.passwordmanager.crypto.SecretArena;
+import com.passwordmanager.crypto.SecretChars;
 import com.passwordmanager.db.DatabaseManager;
+import com.passwordmanager.db.Workload;
+import com.passwordmanager.model.EntryListItem;
+import com.passwordmanager.model.EntryType;
 
 import javax.crypto.SecretKey;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
- * Reads and writes encrypted fields in the entry_fields table.
- * Every value is individually AES-256-GCM encrypted.
+ * Reads and writes the encrypted fields of an entry.
+ *
+ * Two layouts are supported:
+ *   record    – all fields serialised into one {@link FieldRecord}, encrypted once with the
+ *               entry id as AAD and stored in entries.fields_enc (default)
+ *   per-field – one individually encrypted row per field in entry_fields (original layout)
+ *
+ * Reads accept both, so entries migrate lazily the next time they are saved.
+ * Every ciphertext is tagged with the data key version it was written under, so rows
+ * from before and after a key rotation can be read side by side.
+ *
+ * Saves are diffed against what is stored. In the per-field layout only added or changed
+ * keys are encrypted and upserted and only removed keys are deleted. In the record layout
+ * the diff can only skip a save that changes nothing: any changed field rewrites the
+ * whole record, so field-level savings apply to the per-field layout only.
  */
 public class FieldDAO {
 
-    /** Encrypts and stores all fields for an entry (replaces existing). */
+    /**
+     * What is currently stored for an entry, decrypted. {@code recordVersion} is the key
+     * version of the field record, or null if the entry uses per-field rows; {@code versions}
+     * holds the key version of each per-field row.
+     */
+    public record Stored(Integer recordVersion, Map<String, String> values, Map<String, Integer> versions) {
+        boolean isRecord() { return recordVersion != null; }
+    }
+
+    private static final String UPSERT_FIELD = """
+        INSERT INTO entry_fields (entry_id, field_key_id, value_enc, key_version) VALUES (?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE value_enc = VALUES(value_enc), key_version = VALUES(key_version)
+        """;
+
+    /**
+     * Encrypts and stores all fields for an entry (replaces existing). Record layout:
+     * one record write unless nothing changed. Per-field layout: one upsert per changed
+     * field and one delete for the removed ones.
+     */
     public void setFields(long entryId, Map<String, String> fields, SecretKey key) throws Exception {
+        setFields(entryId, fields, key, null);
+    }
+
+    /**
+     * Like {@link #setFields(long, Map, SecretKey)}, diffing against {@code previous} – what
+     * {@link #getStored} returned earlier in the same unit of work – instead of reading and
+     * decrypting the stored fields a second time. Null reads them here.
+     */
+    public void setFields(long entryId, Map<String, String> fields, SecretKey key, Stored previous) throws Exception {
+        int       version  = KeyRing.versionOf(key);
+        SecretKey writeKey = KeyRing.resolve(key, version);
+
+        // Blank values are never stored
+        Map<String, String> wanted = new LinkedHashMap<>();
+        fields.forEach((k, v) -> { if (v != null && !v.isBlank()) wanted.put(k, v); });
+
         try (Connection c = DatabaseManager.getConnection()) {
             c.setAutoCommit(false);
             try {
-                // Delete existing fields
-                try (PreparedStatement del = c.prepareStatement(
-                        "DELETE FROM entry_fields WHERE entry_id = ?")) {
-                    del.setLong(1, entryId);
-                    del.executeUpdate();
-                }
-                // Insert encrypted fields
-                String ins = "INSERT INTO entry_fields (entry_id, field_key, value_enc) VALUES (?, ?, ?)";
-                try (PreparedStatement ps = c.prepareStatement(ins)) {
-                    for (Map.Entry<String, String> entry : fields.entrySet()) {
-                        if (entry.getValue() == null || entry.getValue().isBlank()) continue;
-                        byte[] encrypted = CryptoUtil.encryptString(entry.getValue(), key);
-                        ps.setLong(1, entryId);
-                        ps.setString(2, entry.getKey());
-                        ps.setBytes(3, encrypted);
-                        ps.addBatch();
+                Stored stored = previous != null ? previous : readStored(c, entryId, key);
+                if (useRecordLayout()) {
+                    boolean current = stored.isRecord()
+                            && stored.recordVersion() == version
+                            && stored.values().equals(wanted);
+                    if (!current) writeRecord(c, entryId, wanted, writeKey, version);
+                    if (!stored.isRecord() && !stored.values().isEmpty()) {
+                        deleteFields(c, entryId, stored.values().keySet());
+                    }
+                } else {
+                    if (stored.isRecord()) {
+                        // Migrating back from a record: every field is new
+                        stored = new Stored(null, Map.of(), Map.of());
+                        clearRecord(c, entryId);
                     }
-                    ps.executeBatch();
+                    upsertChanged(c, entryId, wanted, stored, writeKey, version);
+                    Set<String> removed = new HashSet<>(stored.values().keySet());
+                    removed.removeAll(wanted.keySet());
+                    deleteFields(c, entryId, removed);
                 }
                 c.commit();
             } catch (Exception e) {
@@ -50,31 +106,323 @@ public class FieldDAO {
     /** Decrypts and returns all fields for an entry as a plain-text map. */
     public Map<String, String> getFields(long entryId, SecretKey key) throws Exception {
         Map<String, String> result = new LinkedHashMap<>();
-        String sql = "SELECT field_key, value_enc FROM entry_fields WHERE entry_id = ?";
-        try (Connection c = DatabaseManager.getConnection();
+        // Per-field rows are only joined for entries that have not been migrated to a record
+        String sql = """
+            SELECT e.fields_enc, e.fields_key_version, f.field_key_id, f.value_enc, f.key_version
+            FROM entries e
+            LEFT JOIN entry_fields f ON f.entry_id = e.id AND e.fields_enc IS NULL
+            WHERE e.id = ?
+            """;
+        try (Connection c = versionedReadConnection(Workload.current(), key);
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, entryId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    String fieldKey = rs.getString("field_key");
-                    byte[] enc      = rs.getBytes("value_enc");
-                    result.put(fieldKey, CryptoUtil.decryptString(enc, key));
+                    byte[] record = rs.getBytes("fields_enc");
+                    if (record != null) {
+                        SecretKey k = KeyRing.resolve(key, rs.getInt("fields_key_version"));
+                        return decodeRecord(CryptoUtil.decrypt(record, k, FieldRecord.aad(entryId)));
+                    }
+                    String fieldKey = fieldKeyOf(rs);
+                    if (fieldKey == null) continue;
+                    SecretKey k = KeyRing.resolve(key, rs.getInt("key_version"));
+                    result.put(fieldKey, CryptoUtil.decryptString(rs.getBytes("value_enc"), k));
                 }
             }
         }
         return result;
     }
 
-    /** Returns the encrypted bytes for one specific field (used by audit/history). */
+    /**
+     * Decrypts the stored fields of an entry on the primary, for a save that needs the old
+     * values too. Call it inside the saving {@link com.passwordmanager.db.UnitOfWork}, after
+     * the entry row is claimed, and pass the result to {@link #setFields(long, Map, SecretKey, Stored)}.
+     */
+    public Stored getStored(long entryId, SecretKey key) throws Exception {
+        try (Connection c = DatabaseManager.getConnection()) {
+            return readStored(c, entryId, key);
+        }
+    }
+
+    /** Receives one entry at a time from a streaming scan. */
+    @FunctionalInterface
+    public interface EntryFieldsHandler<V> {
+        void accept(EntryListItem entry, Map<String, V> fields) throws Exception;
+
+        /** Called with the entries of each batch before the first of them is accepted. */
+        default void beforeBatch(List<EntryListItem> entries) throws Exception {}
+    }
+
+    /**
+     * Streams every entry of the given type (all types if {@code type} is null) with its
+     * decrypted fields to {@code handler}, in entry id order.
+     *
+     * Rows are read through a cursor {@code db.fetchSize} at a time and decrypted in
+     * batches of that many entries on the crypto worker pool ({@link CryptoUtil#decryptAll}),
+     * so heap use is bounded by the batch, not the vault. Plaintext buffers are wiped
+     * after each batch; the handler should not keep the maps it is given.
+     */
+    public void forEachByType(EntryType type, SecretKey key,
+                              EntryFieldsHandler<String> handler) throws Exception {
+        scanByType(type, key, () -> new BatchValues<>(FieldRecord.ValueDecoder.STRING, null), handler);
+    }
+
+    /**
+     * Like {@link #forEachByType}, but values are decoded into a scope of {@code arena}
+     * instead of Strings. Each batch gets its own scope, wiped as soon as the handler has
+     * seen the batch – views must not be kept past the handler call.
+     */
+    public void forEachSecretByType(EntryType type, SecretKey key, SecretArena arena,
+                                    EntryFieldsHandler<SecretChars> handler) throws Exception {
+        scanByType(type, key, () -> {
+            SecretArena scope = arena.openScope();
+            return new BatchValues<>(scope::decode, scope);
+        }, handler);
+    }
+
+    /** Returns the encrypted bytes for one field stored in the per-field layout, or null. */
     public byte[] getRawField(long entryId, String fieldKey) throws SQLException {
-        String sql = "SELECT value_enc FROM entry_fields WHERE entry_id = ? AND field_key = ?";
+        Integer fieldKeyId = Dictionaries.existingFieldKeyId(fieldKey);
+        if (fieldKeyId == null) return null;
+        String sql = "SELECT value_enc FROM entry_fields WHERE entry_id = ? AND field_key_id = ?";
         try (Connection c = DatabaseManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, entryId);
-            ps.setString(2, fieldKey);
+            ps.setInt(2, fieldKeyId);
             try (ResultSet rs = ps.executeQuery()) {
                 return rs.next() ? rs.getBytes("value_enc") : null;
             }
         }
     }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    /** The value decoder for one scan batch, and the arena scope to wipe after it (if any). */
+    private record BatchValues<V>(FieldRecord.ValueDecoder<V> decoder, SecretArena scope) implements AutoCloseable {
+        @Override
+        public void close() {
+            if (scope != null) scope.close();
+        }
+    }
+
+    private <V> void scanByType(EntryType type, SecretKey key, Supplier<BatchValues<V>> values,
+                                EntryFieldsHandler<V> handler) throws Exception {
+        String sql = """
+            SELECT e.id AS entry_id, e.type_id, e.title, c.name AS cat_name,
+                   e.favorite, e.updated_at, e.fields_enc, e.fields_key_version,
+                   f.field_key_id, f.value_enc, f.key_version
+            FROM entries e
+            LEFT JOIN categories c   ON c.id = e.category_id
+            LEFT JOIN entry_fields f ON f.entry_id = e.id AND e.fields_enc IS NULL
+            """
+            + (type != null ? "WHERE e.type_id = ? " : "")
+            + "ORDER BY e.id";
+        int        batchSize = DatabaseManager.fetchSize();
+        ScanBatch  batch     = new ScanBatch();
+        try (Connection c = versionedReadConnection(Workload.BULK, key);
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setFetchSize(batchSize);
+            if (type != null) ps.setInt(1, Dictionaries.typeId(type));
+            try (ResultSet rs = ps.executeQuery()) {
+                long currentId = -1;
+                while (rs.next()) {
+                    long entryId = rs.getLong("entry_id");
+                    // Per-field rows of one entry are adjacent, so only flush between entries
+                    if (entryId != currentId) {
+                        if (batch.items.size() >= batchSize) batch.flush(values, handler);
+                        batch.items.add(new EntryListItem(
+                                entryId,
+                                Dictionaries.type(rs.getInt("type_id")),
+                                rs.getString("title"),
+                                rs.getString("cat_name"),
+                                rs.getBoolean("favorite"),
+                                rs.getLong("updated_at")));
+                        currentId = entryId;
+                    }
+                    byte[] record = rs.getBytes("fields_enc");
+                    if (record != null) {
+                        batch.add(null, record, KeyRing.resolve(key, rs.getInt("fields_key_version")),
+                                FieldRecord.aad(entryId));
+                    } else {
+                        String fieldKey = fieldKeyOf(rs);
+                        if (fieldKey != null) {
+                            batch.add(fieldKey, rs.getBytes("value_enc"),
+                                    KeyRing.resolve(key, rs.getInt("key_version")), null);
+                        }
+                    }
+                }
+            }
+        }
+        batch.flush(values, handler);
+    }
+
+    /** Entries read but not yet handed out, with the ciphertexts that belong to them. */
+    private static final class ScanBatch {
+        final List<EntryListItem> items     = new ArrayList<>();
+        final List<Integer>       owners    = new ArrayList<>();   // index into items
+        final List<String>        fieldKeys = new ArrayList<>();   // null = whole-entry record
+        final List<byte[]>        blobs     = new ArrayList<>();
+        final List<SecretKey>     keys      = new ArrayList<>();
+        final List<byte[]>        aads      = new ArrayList<>();
+
+        void add(String fieldKey, byte[] blob, SecretKey key, byte[] aad) {
+            owners.add(items.size() - 1);
+            fieldKeys.add(fieldKey);
+            blobs.add(blob);
+            keys.add(key);
+            aads.add(aad);
+        }
+
+        <V> void flush(Supplier<BatchValues<V>> scopes, EntryFieldsHandler<V> handler) throws Exception {
+            List<byte[]> plain = CryptoUtil.decryptAll(blobs, keys, aads);
+            try (BatchValues<V> scope = scopes.get()) {
+                FieldRecord.ValueDecoder<V> values = scope.decoder();
+                List<Map<String, V>> fields = new ArrayList<>(items.size());
+                for (int i = 0; i < items.size(); i++) fields.add(new LinkedHashMap<>());
+                for (int i = 0; i < plain.size(); i++) {
+                    byte[] p        = plain.get(i);
+                    String fieldKey = fieldKeys.get(i);
+                    if (fieldKey == null) {
+                        fields.get(owners.get(i)).putAll(FieldRecord.decode(p, values));
+                    } else {
+                        fields.get(owners.get(i)).put(fieldKey, values.decode(p, 0, p.length));
+                    }
+                }
+                if (!items.isEmpty()) handler.beforeBatch(Collections.unmodifiableList(items));
+                for (int i = 0; i < items.size(); i++) handler.accept(items.get(i), fields.get(i));
+            } finally {
+                for (byte[] p : plain) Arrays.fill(p, (byte) 0);
+                items.clear();
+                owners.clear();
+                fieldKeys.clear();
+                blobs.clear();
+                keys.clear();
+                aads.clear();
+            }
+        }
+    }
+
+    /**
+     * A read connection for ciphertext rows. While a key rotation is in progress a lagging
+     * replica can return rows under a version the session has already dropped, or still
+     * lacks, so these reads stay on the primary until the rotation is over. The vault_meta
+     * write that completes it then keeps all reads on the primary for the replica lag window.
+     */
+    private static Connection versionedReadConnection(Workload workload, SecretKey key) throws SQLException {
+        return KeyRing.isRotating(key)
+                ? DatabaseManager.getConnection(workload)
+                : DatabaseManager.getReadConnection(workload);
+    }
+
+    private static boolean useRecordLayout() {
+        return !"per-field".equalsIgnoreCase(ConfigLoader.get("storage.fieldLayout", "record").trim());
+    }
+
+    private static void writeRecord(Connection c, long entryId, Map<String, String> fields,
+                                    SecretKey key, int version) throws Exception {
+        byte[] record = FieldRecord.encode(fields);
+        byte[] enc;
+        try {
+            enc = CryptoUtil.encrypt(record, key, FieldRecord.aad(entryId));
+        } finally {
+            Arrays.fill(record, (byte) 0);
+        }
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE entries SET fields_enc = ?, fields_key_version = ? WHERE id = ?")) {
+            ps.setBytes(1, enc);
+            ps.setInt(2, version);
+            ps.setLong(3, entryId);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Reads and decrypts the stored fields of one entry on the caller's connection. */
+    private static Stored readStored(Connection c, long entryId, SecretKey key) throws Exception {
+        Map<String, String>  values   = new HashMap<>();
+        Map<String, Integer> versions = new HashMap<>();
+        String sql = """
+            SELECT e.fields_enc, e.fields_key_version, f.field_key_id, f.value_enc, f.key_version
+            FROM entries e
+            LEFT JOIN entry_fields f ON f.entry_id = e.id AND e.fields_enc IS NULL
+            WHERE e.id = ?
+            """;
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, entryId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    byte[] record = rs.getBytes("fields_enc");
+                    if (record != null) {
+                        int v = rs.getInt("fields_key_version");
+                        byte[] plain = CryptoUtil.decrypt(record, KeyRing.resolve(key, v), FieldRecord.aad(entryId));
+                        return new Stored(v, decodeRecord(plain), Map.of());
+                    }
+                    String fieldKey = fieldKeyOf(rs);
+                    if (fieldKey == null) continue;
+                    int v = rs.getInt("key_version");
+                    values.put(fieldKey, CryptoUtil.decryptString(rs.getBytes("value_enc"), KeyRing.resolve(key, v)));
+                    versions.put(fieldKey, v);
+                }
+            }
+        }
+        return new Stored(null, values, versions);
+    }
+
+    /** Encrypts and upserts the fields that differ from (or are older than) what is stored. */
+    private static void upsertChanged(Connection c, long entryId, Map<String, String> fields, Stored stored,
+                                      SecretKey key, int version) throws Exception {
+        try (PreparedStatement ps = c.prepareStatement(UPSERT_FIELD)) {
+            int pending = 0;
+            for (Map.Entry<String, String> entry : fields.entrySet()) {
+                String fieldKey = entry.getKey();
+                if (entry.getValue().equals(stored.values().get(fieldKey))
+                        && Objects.equals(stored.versions().get(fieldKey), version)) continue;
+                ps.setLong(1, entryId);
+                ps.setInt(2, Dictionaries.fieldKeyId(fieldKey));
+                ps.setBytes(3, CryptoUtil.encryptString(entry.getValue(), key));
+                ps.setInt(4, version);
+                ps.addBatch();
+                pending++;
+            }
+            if (pending > 0) ps.executeBatch();
+        }
+    }
+
+    private static void deleteFields(Connection c, long entryId, Collection<String> fieldKeys) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        for (String fieldKey : fieldKeys) {
+            Integer id = Dictionaries.existingFieldKeyId(fieldKey);
+            if (id != null) ids.add(id);
+        }
+        if (ids.isEmpty()) return;
+        String sql = "DELETE FROM entry_fields WHERE entry_id = ? AND field_key_id IN ("
+                   + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, entryId);
+            int i = 2;
+            for (int id : ids) ps.setInt(i++, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /** The row's field key name, or null when the LEFT JOIN found no per-field row. */
+    private static String fieldKeyOf(ResultSet rs) throws SQLException {
+        int id = rs.getInt("field_key_id");
+        return rs.wasNull() ? null : Dictionaries.fieldKey(id);
+    }
+
+    private static void clearRecord(Connection c, long entryId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE entries SET fields_enc = NULL WHERE id = ?")) {
+            ps.setLong(1, entryId);
+            ps.executeUpdate();
+        }
+    }
+
+    private static Map<String, String> decodeRecord(byte[] plain) {
+        try {
+            return FieldRecord.decode(plain);
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+    }
 }
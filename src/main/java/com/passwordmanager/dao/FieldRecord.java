@@ -0,0 +1,115 @@
+package com.passwordmanager.dao;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary encoding of all fields of one entry, stored encrypted in entries.fields_enc.
+ *
+ * Layout: [ format byte | varint count | count × (varint keyLen, key, varint valueLen, value) ]
+ * with keys and values in UTF-8. The entry id is bound to the ciphertext as AAD, so a
+ * record copied onto another entry row fails authentication instead of decrypting.
+ */
+final class FieldRecord {
+
+    private static final byte FORMAT_V1 = 1;
+
+    /** Turns {@code len} UTF-8 bytes at {@code off} into a field value. */
+    @FunctionalInterface
+    interface ValueDecoder<V> {
+        V decode(byte[] utf8, int off, int len);
+
+        ValueDecoder<String> STRING = (utf8, off, len) -> new String(utf8, off, len, StandardCharsets.UTF_8);
+    }
+
+    private FieldRecord() {}
+
+    /** AAD for an entry's field record: the entry id, big-endian. */
+    static byte[] aad(long entryId) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(entryId).array();
+    }
+
+    /**
+     * Encodes the non-blank fields. The record is sized exactly before it is written, so the
+     * returned array is the only copy of the plaintext: wipe it after encrypting it.
+     */
+    static byte[] encode(Map<String, String> fields) {
+        // Key, value, key, value, ... in UTF-8
+        List<byte[]> parts = new ArrayList<>(fields.size() * 2);
+        for (Map.Entry<String, String> e : fields.entrySet()) {
+            if (e.getValue() == null || e.getValue().isBlank()) continue;
+            parts.add(e.getKey().getBytes(StandardCharsets.UTF_8));
+            parts.add(e.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        int count = parts.size() / 2;
+        int size  = 1 + varintSize(count);
+        for (byte[] b : parts) size += varintSize(b.length) + b.length;
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(FORMAT_V1);
+        writeVarint(out, count);
+        for (byte[] b : parts) {
+            writeVarint(out, b.length);
+            out.put(b);
+            Arrays.fill(b, (byte) 0);
+        }
+        return out.array();
+    }
+
+    /** Decodes a record produced by {@link #encode}, preserving field order. */
+    static Map<String, String> decode(byte[] record) {
+        return decode(record, ValueDecoder.STRING);
+    }
+
+    /** Decodes a record, turning each value into a {@code V} (e.g. a view into a secret arena). */
+    static <V> Map<String, V> decode(byte[] record, ValueDecoder<V> values) {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        byte format = in.get();
+        if (format != FORMAT_V1) throw new IllegalStateException("Unknown field record format " + format);
+
+        int count = readVarint(in);
+        Map<String, V> fields = new LinkedHashMap<>(Math.max(4, count * 2));
+        for (int i = 0; i < count; i++) {
+            String key = readValue(in, ValueDecoder.STRING);
+            fields.put(key, readValue(in, values));
+        }
+        return fields;
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static <V> V readValue(ByteBuffer in, ValueDecoder<V> values) {
+        int len = readVarint(in);
+        V v = values.decode(in.array(), in.position(), len);
+        in.position(in.position() + len);
+        return v;
+    }
+
+    private static int varintSize(int v) {
+        int size = 1;
+        while ((v & ~0x7F) != 0) {
+            size++;
+            v >>>= 7;
+        }
+        return size;
+    }
+
+    private static void writeVarint(ByteBuffer out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IllegalStateException("Malformed field record");
+    }
+}
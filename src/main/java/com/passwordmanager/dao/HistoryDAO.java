@@ -1,6 +1,8 @@
 package com.passwordmanager.dao;
 
 import com.passwordmanager.crypto.CryptoUtil;
+import com.passwordmanager.crypto.KeyRing;
+import com.passwordmanager.crypto.SecretArena;
 import com.passwordmanager.db.DatabaseManager;
 import com.passwordmanager.model.PasswordHistory;
 
@@ -8,70 +10,83 @@ import javax.crypto.SecretKey;
 import java.sql.*;
 import java.util.*;
 
-/** Manages the password_history table (last 5 versions per LOGIN entry). */
+/**
+ * Manages the password_history table (last 5 versions per LOGIN entry).
+ *
+ * History is a ring: every entry has MAX_HISTORY slots, keyed by (entry_id, slot), and
+ * each row carries the sequence number of the save that wrote it. A save takes the next
+ * number after the entry's highest and upserts into slot {@code seq % MAX_HISTORY}, which
+ * overwrites the oldest password once the ring is full, so the table never needs pruning.
+ */
 public class HistoryDAO {
 
-    private static final int MAX_HISTORY = 5;
+    public static final int MAX_HISTORY = 5;
+
+    /*
+     * One statement per save. The slot being overwritten holds the save MAX_HISTORY
+     * before this one, hence seq + MAX_HISTORY; the other new values are bound a second
+     * time because H2 resolves neither a row alias nor the derived table in the UPDATE.
+     */
+    private static final String UPSERT = """
+        INSERT INTO password_history (entry_id, slot, seq, value_enc, key_version, changed_at)
+        SELECT ?, MOD(next.seq, ?), next.seq, ?, ?, ?
+        FROM (SELECT COALESCE(MAX(seq) + 1, 0) AS seq FROM password_history WHERE entry_id = ?) AS next
+        ON DUPLICATE KEY UPDATE seq         = seq + ?,
+                                value_enc   = ?,
+                                key_version = ?,
+                                changed_at  = ?
+        """;
 
     /**
-     * Saves a password into history and prunes entries beyond MAX_HISTORY.
-     * Call this BEFORE updating the current password of an entry.
+     * Saves a password into the entry's oldest history slot.
+     * Call this BEFORE updating the current password of an entry, in the same unit of work
+     * that updated the entry row: that row lock keeps two saves from taking the same number.
      */
     public void save(long entryId, String plainPassword, SecretKey key) throws Exception {
-        byte[] encrypted = CryptoUtil.encryptString(plainPassword, key);
-        String ins = "INSERT INTO password_history (entry_id, value_enc, changed_at) VALUES (?, ?, ?)";
+        int    version   = KeyRing.versionOf(key);
+        byte[] encrypted = CryptoUtil.encryptString(plainPassword, KeyRing.resolve(key, version));
+        long   now       = System.currentTimeMillis();
         try (Connection c = DatabaseManager.getConnection();
-             PreparedStatement ps = c.prepareStatement(ins)) {
+             PreparedStatement ps = c.prepareStatement(UPSERT)) {
             ps.setLong(1, entryId);
-            ps.setBytes(2, encrypted);
-            ps.setLong(3, System.currentTimeMillis());
+            ps.setInt(2, MAX_HISTORY);
+            ps.setBytes(3, encrypted);
+            ps.setInt(4, version);
+            ps.setLong(5, now);
+            ps.setLong(6, entryId);
+            ps.setInt(7, MAX_HISTORY);
+            ps.setBytes(8, encrypted);
+            ps.setInt(9, version);
+            ps.setLong(10, now);
             ps.executeUpdate();
         }
-        prune(entryId);
     }
 
-    /** Returns the last MAX_HISTORY passwords for an entry (newest first). */
-    public List<PasswordHistory> findByEntry(long entryId, SecretKey key) throws Exception {
+    /**
+     * Returns the last MAX_HISTORY passwords for an entry (newest first).
+     * Passwords are decoded into {@code arena} and become unreadable once it is wiped.
+     */
+    public List<PasswordHistory> findByEntry(long entryId, SecretKey key, SecretArena arena) throws Exception {
         List<PasswordHistory> list = new ArrayList<>();
-        String sql = "SELECT id, entry_id, value_enc, changed_at "
-                   + "FROM password_history WHERE entry_id = ? ORDER BY changed_at DESC";
+        String sql = "SELECT id, entry_id, value_enc, key_version, changed_at "
+                   + "FROM password_history WHERE entry_id = ? ORDER BY seq DESC";
         try (Connection c = DatabaseManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, entryId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    String plain = CryptoUtil.decryptString(rs.getBytes("value_enc"), key);
+                    SecretKey k  = KeyRing.resolve(key, rs.getInt("key_version"));
+                    byte[] plain = CryptoUtil.decrypt(rs.getBytes("value_enc"), k);
                     list.add(new PasswordHistory(
                             rs.getLong("id"),
                             rs.getLong("entry_id"),
-                            plain,
+                            arena.decode(plain),
                             rs.getLong("changed_at")
                     ));
+                    Arrays.fill(plain, (byte) 0);
                 }
             }
         }
         return list;
     }
-
-    // Delete oldest records so only MAX_HISTORY remain
-    private void prune(long entryId) throws SQLException {
-        String sql = """
-            DELETE FROM password_history WHERE entry_id = ?
-            AND id NOT IN (
-                SELECT id FROM (
-                    SELECT id FROM password_history
-                    WHERE entry_id = ?
-                    ORDER BY changed_at DESC
-                    LIMIT ?
-                ) AS keep
-            )
-            """;
-        try (Connection c = DatabaseManager.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setLong(1, entryId);
-            ps.setLong(2, entryId);
-            ps.setInt(3, MAX_HISTORY);
-            ps.executeUpdate();
-        }
-    }
 }
@@ -0,0 +1,121 @@
+package com.passwordmanager.dao;
+
+import com.passwordmanager.crypto.CryptoUtil;
+import com.passwordmanager.crypto.KeyRing;
+import com.passwordmanager.db.DatabaseManager;
+import com.passwordmanager.db.Workload;
+
+import javax.crypto.SecretKey;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Batch re-encryption of versioned ciphertext rows during a data key rotation.
+ *
+ * Each batch runs in its own transaction: rows still under an old key version are
+ * locked, re-encrypted under the ring's current version, and the progress cursor
+ * is written to vault_meta in the same commit, so a crash never loses or repeats work.
+ */
+public class KeyRotationDAO {
+
+    /** Tables holding a ciphertext column plus the key version it was written under. */
+    public enum Table {
+        ENTRY_FIELDS("entry_fields", "value_enc", "key_version", false),
+        ENTRY_RECORDS("entries", "fields_enc", "fields_key_version", true),
+        PASSWORD_HISTORY("password_history", "value_enc", "key_version", false);
+
+        private final String  tableName;
+        private final String  valueColumn;
+        private final String  versionColumn;
+        private final boolean idAsAad;   // ciphertext is bound to the row id (entry field records)
+
+        Table(String tableName, String valueColumn, String versionColumn, boolean idAsAad) {
+            this.tableName     = tableName;
+            this.valueColumn   = valueColumn;
+            this.versionColumn = versionColumn;
+            this.idAsAad       = idAsAad;
+        }
+
+        public String tableName() { return tableName; }
+
+        private byte[] aad(long id) { return idAsAad ? FieldRecord.aad(id) : null; }
+    }
+
+    /**
+     * Re-encrypts up to {@code batchSize} rows with {@code id > afterId} that are not yet
+     * under the ring's current version, and stores the new cursor under {@code cursorKey}.
+     *
+     * @return id of the last row processed, or -1 if no stale rows remain past {@code afterId}
+     */
+    public long rotateBatch(Table table, long afterId, int batchSize, KeyRing ring, String cursorKey)
+            throws Exception {
+        int target = ring.currentVersion();
+        SecretKey newKey = ring.forVersion(target);
+        String val = table.valueColumn, ver = table.versionColumn;
+        String sel = "SELECT id, " + val + ", " + ver + " FROM " + table.tableName()
+                   + " WHERE id > ? AND " + ver + " <> ? AND " + val + " IS NOT NULL"
+                   + " ORDER BY id LIMIT ? FOR UPDATE";
+        String upd = "UPDATE " + table.tableName()
+                   + " SET " + val + " = ?, " + ver + " = ? WHERE id = ? AND " + ver + " = ?";
+        String cur = "INSERT INTO vault_meta (key_name, value) VALUES (?, ?) "
+                   + "ON DUPLICATE KEY UPDATE value = VALUES(value)";
+
+        try (Connection c = DatabaseManager.getConnection(Workload.BULK)) {
+            c.setAutoCommit(false);
+            try {
+                long lastId = -1;
+                try (PreparedStatement ps  = c.prepareStatement(sel);
+                     PreparedStatement ups = c.prepareStatement(upd)) {
+                    ps.setLong(1, afterId);
+                    ps.setInt(2, target);
+                    ps.setInt(3, batchSize);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            long id      = rs.getLong("id");
+                            int  version = rs.getInt(ver);
+                            byte[] aad   = table.aad(id);
+                            byte[] plain = CryptoUtil.decrypt(rs.getBytes(val), ring.forVersion(version), aad);
+                            byte[] enc   = CryptoUtil.encrypt(plain, newKey, aad);
+                            Arrays.fill(plain, (byte) 0);
+                            ups.setBytes(1, enc);
+                            ups.setInt(2, target);
+                            ups.setLong(3, id);
+                            ups.setInt(4, version);
+                            ups.addBatch();
+                            lastId = id;
+                        }
+                    }
+                    if (lastId >= 0) ups.executeBatch();
+                }
+                if (lastId >= 0) {
+                    try (PreparedStatement ps = c.prepareStatement(cur)) {
+                        ps.setString(1, cursorKey);
+                        ps.setString(2, String.valueOf(lastId));
+                        ps.executeUpdate();
+                    }
+                }
+                c.commit();
+                if (lastId >= 0) MetaDAO.invalidate(cursorKey);
+                return lastId;
+            } catch (Exception e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    /** Counts rows not yet under {@code version} (used to confirm a rotation is complete). */
+    public long countStale(Table table, int version) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM " + table.tableName()
+                   + " WHERE " + table.versionColumn + " <> ? AND " + table.valueColumn + " IS NOT NULL";
+        try (Connection c = DatabaseManager.getConnection(Workload.BULK);
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, version);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+}
@@ -1,35 +1,156 @@
 package com.passwordmanager.dao;
 
+import com.passwordmanager.crypto.CryptoUtil;
 import com.passwordmanager.db.DatabaseManager;
+import com.passwordmanager.db.UnitOfWork;
 
 import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
-/** Reads and writes key-value pairs in the vault_meta table. */
+/**
+ * Reads and writes key-value pairs in the vault_meta table.
+ *
+ * Text values live in {@code value}; binary values (salts, wrapped keys, encrypted
+ * secrets) live in {@code value_bin}. Older vaults stored binary values as hex text –
+ * {@link #getBytes} still reads those and rewrites them as binary on first access.
+ *
+ * All instances share a write-through cache, so an unlock or TOTP check after the first
+ * reads the KDF salt and parameters, wrapped data keys and TOTP secret from memory.
+ * Other clients may write vault_meta too (see {@link EntryConflictException}); a cached
+ * value that has gone stale shows up as a failed unwrap or TOTP check, and callers then
+ * {@link #revalidate} the keys involved and retry if any of them had changed.
+ */
 public class MetaDAO {
 
+    private record Cached(String text, byte[] bin) {}
+
+    private static final Cached MISSING = new Cached(null, null);
+    private static final Map<String, Cached> CACHE = new ConcurrentHashMap<>();
+
+    private static final String UPSERT = "INSERT INTO vault_meta (key_name, value, value_bin) VALUES (?, ?, ?) "
+                                       + "ON DUPLICATE KEY UPDATE value = VALUES(value), value_bin = VALUES(value_bin)";
+
+    /** Text value, or null. Binary values are returned hex-encoded. */
     public String get(String key) throws SQLException {
-        String sql = "SELECT value FROM vault_meta WHERE key_name = ?";
+        Cached v = load(key);
+        if (v.bin != null) return CryptoUtil.toHex(v.bin);
+        return v.text;
+    }
+
+    /** Binary value, or null. Legacy hex text values are decoded and upgraded to binary. */
+    public byte[] getBytes(String key) throws SQLException {
+        Cached v = load(key);
+        if (v.bin != null) return v.bin.clone();
+        if (v.text == null) return null;
+        byte[] bytes = CryptoUtil.fromHex(v.text);
+        setBytes(key, bytes);
+        return bytes;
+    }
+
+    public void set(String key, String value) throws SQLException {
+        setAll(Map.of(key, value));
+    }
+
+    public void setBytes(String key, byte[] value) throws SQLException {
+        setAll(Map.of(key, value));
+    }
+
+    /**
+     * Writes several keys in one transaction – either all of them land or none do.
+     * Values are {@code String} (text) or {@code byte[]} (binary).
+     */
+    public void setAll(Map<String, ?> values) throws SQLException {
+        Map<String, Cached> written = new LinkedHashMap<>();
+        try (Connection c = DatabaseManager.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(UPSERT)) {
+                for (Map.Entry<String, ?> e : values.entrySet()) {
+                    Cached v = toCached(e.getValue());
+                    ps.setString(1, e.getKey());
+                    ps.setString(2, v.bin != null ? "" : v.text);
+                    ps.setBytes(3, v.bin);
+                    ps.addBatch();
+                    written.put(e.getKey(), v);
+                }
+                ps.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+        // Inside a UnitOfWork the rows only become visible when the unit commits
+        UnitOfWork.afterCommit(() -> CACHE.putAll(written));
+    }
+
+    public void delete(String key) throws SQLException {
+        String sql = "DELETE FROM vault_meta WHERE key_name = ?";
         try (Connection c = DatabaseManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, key);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next() ? rs.getString("value") : null;
+            ps.executeUpdate();
+        }
+        UnitOfWork.afterCommit(() -> CACHE.put(key, MISSING));
+    }
+
+    public boolean exists(String key) throws SQLException {
+        return load(key) != MISSING;
+    }
+
+    /**
+     * Re-reads every cached key that starts with one of {@code prefixes}, for when a
+     * check that used them failed and another client may have changed them.
+     *
+     * @return true if any of them differed from the cached value
+     */
+    public boolean revalidate(Collection<String> prefixes) throws SQLException {
+        boolean changed = false;
+        for (String key : new ArrayList<>(CACHE.keySet())) {
+            if (prefixes.stream().noneMatch(key::startsWith)) continue;
+            Cached before = CACHE.remove(key);
+            Cached now    = load(key);
+            if (before == null || !Objects.equals(before.text, now.text) || !Arrays.equals(before.bin, now.bin)) {
+                changed = true;
             }
         }
+        return changed;
     }
 
-    public void set(String key, String value) throws SQLException {
-        String sql = "INSERT INTO vault_meta (key_name, value) VALUES (?, ?) "
-                   + "ON DUPLICATE KEY UPDATE value = VALUES(value)";
+    /** For DAOs that write vault_meta rows inside their own transactions. */
+    static void invalidate(String key) {
+        CACHE.remove(key);
+    }
+
+    /** Forgets everything cached, e.g. when a different database is opened. */
+    static void clearCache() {
+        CACHE.clear();
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static Cached load(String key) throws SQLException {
+        Cached v = CACHE.get(key);
+        if (v != null) return v;
+
+        String sql = "SELECT value, value_bin FROM vault_meta WHERE key_name = ?";
         try (Connection c = DatabaseManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, key);
-            ps.setString(2, value);
-            ps.executeUpdate();
+            try (ResultSet rs = ps.executeQuery()) {
+                v = rs.next() ? new Cached(rs.getString("value"), rs.getBytes("value_bin")) : MISSING;
+            }
         }
+        // A concurrent write wins over this read
+        Cached prev = CACHE.putIfAbsent(key, v);
+        return prev != null ? prev : v;
     }
 
-    public boolean exists(String key) throws SQLException {
-        return get(key) != null;
+    private static Cached toCached(Object value) {
+        if (value instanceof byte[] b) return new Cached(null, b.clone());
+        if (value instanceof String s) return new Cached(s, null);
+        throw new IllegalArgumentException("Unsupported vault_meta value type: " + value);
     }
 }
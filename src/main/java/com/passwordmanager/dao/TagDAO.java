@@ -1,6 +1,7 @@
 package com.passwordmanager.dao;
 
 import com.passwordmanager.db.DatabaseManager;
+import com.passwordmanager.db.Workload;
 import com.passwordmanager.model.Tag;
 
 import java.sql.*;
@@ -8,10 +9,13 @@ import java.util.*;
 
 public class TagDAO {
 
+    /** Length of tags.name, in characters. */
+    public static final int MAX_NAME_LENGTH = 64;
+
     public List<Tag> findAll() throws SQLException {
         List<Tag> list = new ArrayList<>();
         String sql = "SELECT id, name FROM tags ORDER BY name";
-        try (Connection c = DatabaseManager.getConnection();
+        try (Connection c = DatabaseManager.getReadConnection();
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) list.add(new Tag(rs.getInt("id"), rs.getString("name")));
@@ -46,7 +50,7 @@ public class TagDAO {
         String sql = "SELECT t.name FROM tags t "
                    + "JOIN entry_tags et ON et.tag_id = t.id "
                    + "WHERE et.entry_id = ? ORDER BY t.name";
-        try (Connection c = DatabaseManager.getConnection();
+        try (Connection c = DatabaseManager.getReadConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, entryId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -56,8 +60,52 @@ public class TagDAO {
         return names;
     }
 
-    /** Replaces all tags for an entry with the provided list. */
+    /** Returns tag names for the given entries (entryId → names), one batch of a full-vault export at a time. */
+    public Map<Long, List<String>> findNamesByEntries(Collection<Long> entryIds) throws SQLException {
+        Map<Long, List<String>> result = new HashMap<>();
+        if (entryIds.isEmpty()) return result;
+        String sql = "SELECT et.entry_id, t.name FROM tags t "
+                   + "JOIN entry_tags et ON et.tag_id = t.id "
+                   + "WHERE et.entry_id IN (" + String.join(", ", Collections.nCopies(entryIds.size(), "?")) + ") "
+                   + "ORDER BY et.entry_id, t.name";
+        try (Connection c = DatabaseManager.getReadConnection(Workload.BULK);
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = 1;
+            for (long id : entryIds) ps.setLong(i++, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.computeIfAbsent(rs.getLong("entry_id"), id -> new ArrayList<>())
+                          .add(rs.getString("name"));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces all tags for an entry with the provided list.
+     *
+     * Runs at most four statements on one connection whatever the tag count: drop the old
+     * associations, look up which names already exist, create only the missing ones with
+     * one multi-row insert, then link the entry to every named tag with one INSERT … SELECT.
+     * Existing tags are never re-inserted, so saves don't burn auto-increment ids.
+     *
+     * @throws IllegalArgumentException if a name is longer than {@link #MAX_NAME_LENGTH}
+     */
     public void setTagsForEntry(long entryId, List<String> tagNames) throws SQLException {
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : tagNames) {
+            if (name == null || name.isBlank()) continue;
+            String trimmed = name.trim();
+            // Checked here: the column would otherwise truncate it or reject the whole save
+            if (trimmed.codePointCount(0, trimmed.length()) > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("Tag \"" + trimmed + "\" is longer than "
+                        + MAX_NAME_LENGTH + " characters");
+            }
+            names.add(trimmed);
+        }
+        String params = String.join(", ", Collections.nCopies(names.size(), "?"));
+
         try (Connection c = DatabaseManager.getConnection()) {
             c.setAutoCommit(false);
             try {
@@ -67,14 +115,34 @@ public class TagDAO {
                     del.setLong(1, entryId);
                     del.executeUpdate();
                 }
-                // Re-insert
-                for (String name : tagNames) {
-                    Tag tag = findOrCreate(name.trim());
-                    try (PreparedStatement ins = c.prepareStatement(
-                            "INSERT IGNORE INTO entry_tags (entry_id, tag_id) VALUES (?, ?)")) {
-                        ins.setLong(1, entryId);
-                        ins.setInt(2, tag.getId());
-                        ins.executeUpdate();
+                if (!names.isEmpty()) {
+                    // Create missing tags; a name created concurrently hits the unique key and is kept
+                    Set<String> missing = new LinkedHashSet<>(names);
+                    try (PreparedStatement sel = c.prepareStatement(
+                            "SELECT name FROM tags WHERE name IN (" + params + ")")) {
+                        int i = 1;
+                        for (String name : names) sel.setString(i++, name);
+                        try (ResultSet rs = sel.executeQuery()) {
+                            while (rs.next()) missing.remove(rs.getString("name"));
+                        }
+                    }
+                    if (!missing.isEmpty()) {
+                        String values = String.join(", ", Collections.nCopies(missing.size(), "(?)"));
+                        try (PreparedStatement ins = c.prepareStatement(
+                                "INSERT INTO tags (name) VALUES " + values + " ON DUPLICATE KEY UPDATE id = id")) {
+                            int i = 1;
+                            for (String name : missing) ins.setString(i++, name);
+                            ins.executeUpdate();
+                        }
+                    }
+                    // Re-link
+                    try (PreparedStatement link = c.prepareStatement(
+                            "INSERT IGNORE INTO entry_tags (entry_id, tag_id) "
+                          + "SELECT ?, id FROM tags WHERE name IN (" + params + ")")) {
+                        link.setLong(1, entryId);
+                        int i = 2;
+                        for (String name : names) link.setString(i++, name);
+                        link.executeUpdate();
                     }
                 }
                 c.commit();
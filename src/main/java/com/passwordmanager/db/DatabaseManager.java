@@ -2,31 +2,250 @@ package com.passwordmanager.db;
 
 import com.passwordmanager.config.ConfigLoader;
 import com.zaxxer.hikari.*;
+import com.zaxxer.hikari.pool.HikariPool;
 
+import java.nio.file.Path;
 import java.sql.*;
+import java.util.*;
+import java.util.function.Supplier;
 
 /**
- * Initialises the HikariCP connection pool and creates/migrates the MySQL schema.
+ * Initialises the HikariCP connection pools – one per {@link Workload} – and brings the
+ * schema up to date through {@link SchemaMigrator}.
+ *
+ * Two backends, chosen by {@code db.backend}:
+ *   mysql    – a MySQL server (default)
+ *   embedded – a single-file H2 database in MySQL compatibility mode, for single-user
+ *              desktops without a server; the DAOs run the same SQL against both
+ *
+ * With mysql, read-only DAO calls can be served by read replicas – see
+ * {@link #getReadConnection()}.
  *
  * Call {@link #init()} once at application startup, then use {@link #getConnection()}
  * anywhere in the DAO layer.
  */
 public final class DatabaseManager {
 
-    private static HikariDataSource dataSource;
+    private static final Map<Workload, HikariDataSource> pools = new EnumMap<>(Workload.class);
+
+    private static ReplicaSet    replicas;          // null: no replicas configured
+    private static long          replicaLagMillis;
+    private static volatile long primaryUntil;      // reads stay on the primary until then (epoch millis)
 
     private DatabaseManager() {}
 
     // ── Bootstrap ─────────────────────────────────────────────────────────────
 
     public static void init() throws SQLException {
+        boolean embedded = "embedded".equalsIgnoreCase(ConfigLoader.get("db.backend", "mysql").trim());
+        if (embedded) {
+            open(DatabaseManager::embeddedConfig, false, List.of());
+        } else {
+            open(DatabaseManager::mySqlConfig, true, mySqlReplicaConfigs());
+        }
+    }
+
+    /**
+     * Opens the primary pools from {@code primary}, one replica set from
+     * {@code replicaConfigs} (empty: no replicas) and migrates the primary schema.
+     * Package-private so tests can run the same routing against in-process databases.
+     */
+    static void open(Supplier<HikariConfig> primary, boolean createMissingDatabase,
+                     List<Supplier<HikariConfig>> replicaConfigs) throws SQLException {
+        for (Workload w : Workload.values()) {
+            HikariConfig cfg = primary.get();
+            applySizing(cfg, w);
+            pools.put(w, createMissingDatabase ? openMySql(cfg) : new HikariDataSource(cfg));
+        }
+        if (!replicaConfigs.isEmpty()) replicas = openReplicas(replicaConfigs);
+
+        try (Connection c = poolConnection(Workload.INTERACTIVE)) {
+            SchemaMigrator.migrate(c);
+        }
+    }
+
+    private static HikariConfig mySqlConfig() {
+        return mySqlConfig(ConfigLoader.get("db.host", "localhost"), ConfigLoader.get("db.port", "3306"));
+    }
+
+    private static HikariConfig mySqlConfig(String host, String port) {
+        String dbName   = ConfigLoader.get("db.name",     "password_manager");
+
+        HikariConfig cfg = new HikariConfig();
+        // useCursorFetch: statements with a fetch size (full-vault scans) read rows through a
+        // server-side cursor instead of buffering the whole result set in the driver
+        cfg.setJdbcUrl(String.format(
+                "jdbc:mysql://%s:%s/%s?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true"
+                + "&useCursorFetch=true",
+                host, port, dbName));
+        cfg.setUsername(ConfigLoader.get("db.user",     "root"));
+        cfg.setPassword(ConfigLoader.get("db.password", ""));
+        // Entry hydration folds tag names with GROUP_CONCAT; don't let the 1 KB default truncate them
+        cfg.addDataSourceProperty("sessionVariables", "group_concat_max_len=65536");
+        return cfg;
+    }
+
+    private static HikariDataSource openMySql(HikariConfig cfg) throws SQLException {
+        try {
+            return new HikariDataSource(cfg);
+        } catch (HikariPool.PoolInitializationException e) {
+            if (!isUnknownDatabase(e)) throw e;
+            // First run against this server: create the database, then connect again
+            createDatabase();
+            return new HikariDataSource(cfg);
+        }
+    }
+
+    /**
+     * Connection settings for the replicas in {@code db.replica.hosts} (host[:port],
+     * comma-separated), which share the primary's database name and credentials.
+     */
+    private static List<Supplier<HikariConfig>> mySqlReplicaConfigs() {
+        List<Supplier<HikariConfig>> configs = new ArrayList<>();
+        for (String h : ConfigLoader.get("db.replica.hosts", "").split(",")) {
+            if (h.isBlank()) continue;
+            String[] hostPort = h.trim().split(":", 2);
+            String   port     = hostPort.length > 1 ? hostPort[1] : ConfigLoader.get("db.port", "3306");
+            configs.add(() -> mySqlConfig(hostPort[0], port));
+        }
+        return configs;
+    }
+
+    /**
+     * One pool per workload for each replica. A replica that is down at startup doesn't
+     * stop the app – its pools just fail over until it comes back.
+     */
+    private static ReplicaSet openReplicas(List<Supplier<HikariConfig>> configs) {
+        replicaLagMillis = ConfigLoader.getInt("db.replica.maxLagMillis", 5_000);
+        int        timeout = Math.max(250, ConfigLoader.getInt("db.replica.timeoutMillis", 1_000));
+        ReplicaSet set     = new ReplicaSet(configs.size(), ConfigLoader.getInt("db.replica.retryMillis", 30_000));
+        for (int i = 0; i < configs.size(); i++) {
+            for (Workload w : Workload.values()) {
+                HikariConfig cfg = configs.get(i).get();
+                applySizing(cfg, w);
+                cfg.setPoolName(w.poolName() + "-Replica" + (i + 1));
+                cfg.setConnectionTimeout(Math.min(cfg.getConnectionTimeout(), timeout));
+                cfg.setInitializationFailTimeout(-1);
+                cfg.setReadOnly(true);   // a write routed here by mistake fails instead of diverging
+                set.add(w, i, new HikariDataSource(cfg));
+            }
+        }
+        return set;
+    }
+
+    private static HikariConfig embeddedConfig() {
+        String file = ConfigLoader.get("db.file",
+                Path.of(System.getProperty("user.home"), ".passwordmanager", "vault").toString());
+
+        // MySQL mode accepts the DAOs' INSERT IGNORE / ON DUPLICATE KEY / GROUP_CONCAT as is;
+        // lower-case identifiers keep metadata lookups identical, and vault_meta has a column named value
+        HikariConfig cfg = new HikariConfig();
+        cfg.setJdbcUrl("jdbc:h2:file:" + file + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=VALUE");
+        cfg.setUsername("sa");
+        cfg.setPassword("");
+        return cfg;
+    }
+
+    /** Pool name, size and checkout timeout for one workload, from db.pool.&lt;name&gt;.* */
+    private static void applySizing(HikariConfig cfg, Workload w) {
+        String prefix = "db.pool." + w.configName() + ".";
+        int    size   = Math.max(1, ConfigLoader.getInt(prefix + "size", w.defaultSize()));
+        cfg.setPoolName(w.poolName());
+        cfg.setMaximumPoolSize(size);
+        cfg.setMinimumIdle(w.keepIdle() ? size : 0);
+        cfg.setConnectionTimeout(ConfigLoader.getInt(prefix + "timeoutMillis", w.defaultTimeoutMillis()));
+    }
+
+    // ── Connections ───────────────────────────────────────────────────────────
+
+    /**
+     * A connection for one DAO call – the shared connection of the current {@link UnitOfWork}
+     * if one is active on this thread, otherwise one from the pool of the thread's current
+     * {@link Workload}.
+     */
+    public static Connection getConnection() throws SQLException {
+        return getConnection(Workload.current());
+    }
+
+    /**
+     * Like {@link #getConnection()}, for DAO methods that always belong to one workload.
+     * Inside a UnitOfWork the unit's connection still wins, so the transaction stays whole.
+     */
+    public static Connection getConnection(Workload workload) throws SQLException {
+        Connection shared = UnitOfWork.current();
+        return shared != null ? shared : poolConnection(workload);
+    }
+
+    /**
+     * A connection for a read-only DAO call that can tolerate replica lag. It comes from a
+     * read replica when {@code db.replica.hosts} is set, except that
+     *   – inside a {@link UnitOfWork} it is the unit's connection, and
+     *   – for {@code db.replica.maxLagMillis} after this process writes to the primary
+     *     (see {@link WriteTracker}) reads stay on the primary, so the app reads its own writes.
+     * Falls back to the primary whenever no replica can hand out a connection.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return getReadConnection(Workload.current());
+    }
+
+    public static Connection getReadConnection(Workload workload) throws SQLException {
+        Connection shared = UnitOfWork.current();
+        if (shared != null) return shared;
+        if (replicas != null && System.currentTimeMillis() >= primaryUntil) {
+            Connection replica = replicas.connection(workload);
+            if (replica != null) return replica;
+        }
+        return primaryConnection(workload);
+    }
+
+    /**
+     * A pool connection that is never the current {@link UnitOfWork}'s, for small writes
+     * that must commit on their own whatever happens to the surrounding transaction.
+     */
+    public static Connection getAutonomousConnection() throws SQLException {
+        return poolConnection(Workload.current());
+    }
+
+    static Connection poolConnection(Workload workload) throws SQLException {
+        Connection c = primaryConnection(workload);
+        return replicas != null ? WriteTracker.wrap(c, DatabaseManager::noteWrite) : c;
+    }
+
+    /** Keeps reads on the primary until replicas have had time to apply this write. */
+    private static void noteWrite() {
+        primaryUntil = System.currentTimeMillis() + replicaLagMillis;
+    }
+
+    private static Connection primaryConnection(Workload workload) throws SQLException {
+        HikariDataSource pool = pools.get(workload);
+        if (pool == null) throw new IllegalStateException("DatabaseManager not initialized");
+        return pool.getConnection();
+    }
+
+    /** Rows per round trip for streaming scans ({@code db.fetchSize}). */
+    public static int fetchSize() {
+        return Math.max(1, ConfigLoader.getInt("db.fetchSize", 500));
+    }
+
+    public static void shutdown() {
+        for (HikariDataSource pool : pools.values()) {
+            if (!pool.isClosed()) pool.close();
+        }
+        pools.clear();
+        if (replicas != null) replicas.close();
+        replicas     = null;
+        primaryUntil = 0;
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static void createDatabase() throws SQLException {
         String host     = ConfigLoader.get("db.host",     "localhost");
         String port     = ConfigLoader.get("db.port",     "3306");
         String dbName   = ConfigLoader.get("db.name",     "password_manager");
         String user     = ConfigLoader.get("db.user",     "root");
         String password = ConfigLoader.get("db.password", "");
 
-        // Ensure the database itself exists (connect without schema first)
         String rootUrl = String.format(
                 "jdbc:mysql://%s:%s?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true",
                 host, port);
@@ -35,144 +254,13 @@ public final class DatabaseManager {
             s.executeUpdate("CREATE DATABASE IF NOT EXISTS `" + dbName
                     + "` CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci");
         }
-
-        // Now configure HikariCP for the target database
-        HikariConfig cfg = new HikariConfig();
-        cfg.setJdbcUrl(String.format(
-                "jdbc:mysql://%s:%s/%s?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true",
-                host, port, dbName));
-        cfg.setUsername(user);
-        cfg.setPassword(password);
-        cfg.setMaximumPoolSize(10);
-        cfg.setConnectionTimeout(5_000);
-        cfg.setPoolName("PM-Pool");
-
-        dataSource = new HikariDataSource(cfg);
-        createSchema();
     }
 
-    public static Connection getConnection() throws SQLException {
-        if (dataSource == null) throw new IllegalStateException("DatabaseManager not initialized");
-        return dataSource.getConnection();
-    }
-
-    public static void shutdown() {
-        if (dataSource != null && !dataSource.isClosed()) dataSource.close();
-    }
-
-    // ── Schema creation ───────────────────────────────────────────────────────
-
-    private static void createSchema() throws SQLException {
-        try (Connection c = getConnection(); Statement s = c.createStatement()) {
-
-            // Vault-level metadata (salt, iterations, TOTP secret, etc.)
-            s.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS vault_meta (
-                    key_name  VARCHAR(64)  NOT NULL,
-                    value     TEXT         NOT NULL,
-                    PRIMARY KEY (key_name)
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """);
-
-            // Entry type lookup
-            s.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS entry_types (
-                    id    INT          NOT NULL AUTO_INCREMENT,
-                    name  VARCHAR(32)  NOT NULL,
-                    PRIMARY KEY (id),
-                    UNIQUE KEY uq_entry_types_name (name)
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """);
-
-            // Seed entry types
-            s.executeUpdate("""
-                INSERT IGNORE INTO entry_types (name) VALUES
-                    ('LOGIN'), ('NOTE'), ('CARD'), ('IDENTITY')
-                """);
-
-            // User-defined categories
-            s.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS categories (
-                    id    INT          NOT NULL AUTO_INCREMENT,
-                    name  VARCHAR(64)  NOT NULL,
-                    PRIMARY KEY (id),
-                    UNIQUE KEY uq_categories_name (name)
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """);
-
-            // User-defined tags
-            s.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS tags (
-                    id    INT          NOT NULL AUTO_INCREMENT,
-                    name  VARCHAR(64)  NOT NULL,
-                    PRIMARY KEY (id),
-                    UNIQUE KEY uq_tags_name (name)
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """);
-
-            // Main entries
-            s.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS entries (
-                    id           BIGINT       NOT NULL AUTO_INCREMENT,
-                    type_id      INT          NOT NULL,
-                    title        VARCHAR(255) NOT NULL,
-                    category_id  INT,
-                    favorite     TINYINT(1)   NOT NULL DEFAULT 0,
-                    created_at   BIGINT       NOT NULL,
-                    updated_at   BIGINT       NOT NULL,
-                    PRIMARY KEY (id),
-                    INDEX idx_entries_title (title),
-                    CONSTRAINT fk_entries_type     FOREIGN KEY (type_id)     REFERENCES entry_types(id),
-                    CONSTRAINT fk_entries_category FOREIGN KEY (category_id) REFERENCES categories(id) ON DELETE SET NULL
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """);
-
-            // Encrypted field store (flexible per-type key-value pairs)
-            s.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS entry_fields (
-                    id         BIGINT       NOT NULL AUTO_INCREMENT,
-                    entry_id   BIGINT       NOT NULL,
-                    field_key  VARCHAR(64)  NOT NULL,
-                    value_enc  BLOB         NOT NULL,
-                    PRIMARY KEY (id),
-                    UNIQUE KEY uq_entry_fields (entry_id, field_key),
-                    CONSTRAINT fk_fields_entry FOREIGN KEY (entry_id) REFERENCES entries(id) ON DELETE CASCADE
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """);
-
-            // Password history (LOGIN entries only)
-            s.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS password_history (
-                    id          BIGINT  NOT NULL AUTO_INCREMENT,
-                    entry_id    BIGINT  NOT NULL,
-                    value_enc   BLOB    NOT NULL,
-                    changed_at  BIGINT  NOT NULL,
-                    PRIMARY KEY (id),
-                    INDEX idx_history_entry (entry_id),
-                    CONSTRAINT fk_history_entry FOREIGN KEY (entry_id) REFERENCES entries(id) ON DELETE CASCADE
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """);
-
-            // Entry ↔ Tag (many-to-many)
-            s.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS entry_tags (
-                    entry_id  BIGINT  NOT NULL,
-                    tag_id    INT     NOT NULL,
-                    PRIMARY KEY (entry_id, tag_id),
-                    CONSTRAINT fk_et_entry FOREIGN KEY (entry_id) REFERENCES entries(id) ON DELETE CASCADE,
-                    CONSTRAINT fk_et_tag   FOREIGN KEY (tag_id)   REFERENCES tags(id)    ON DELETE CASCADE
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """);
-
-            // Backup codes (bcrypt-hashed one-time codes)
-            s.executeUpdate("""
-                CREATE TABLE IF NOT EXISTS backup_codes (
-                    id         INT          NOT NULL AUTO_INCREMENT,
-                    code_hash  VARCHAR(60)  NOT NULL,
-                    used       TINYINT(1)   NOT NULL DEFAULT 0,
-                    PRIMARY KEY (id)
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-                """);
+    /** MySQL error 1049: the schema named in the JDBC URL does not exist. */
+    private static boolean isUnknownDatabase(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof SQLException e && e.getErrorCode() == 1049) return true;
         }
+        return false;
     }
 }
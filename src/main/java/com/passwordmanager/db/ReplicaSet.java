@@ -0,0 +1,60 @@
+package com.passwordmanager.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The read replicas configured in {@code db.replica.hosts}, each with one pool per
+ * {@link Workload}. Reads are spread round-robin; a replica that fails to hand out a
+ * connection is skipped for {@code retryMillis} before it is tried again.
+ */
+final class ReplicaSet {
+
+    private final int                                   count;
+    private final long                                  retryMillis;
+    private final Map<Workload, List<HikariDataSource>> pools     = new EnumMap<>(Workload.class);
+    private final AtomicLongArray                       downUntil;   // per replica, epoch millis
+    private final AtomicInteger                         next      = new AtomicInteger();
+
+    ReplicaSet(int count, long retryMillis) {
+        this.count       = count;
+        this.retryMillis = retryMillis;
+        this.downUntil   = new AtomicLongArray(count);
+    }
+
+    /** Registers the pool of replica {@code index} (0-based, in config order) for {@code workload}. */
+    void add(Workload workload, int index, HikariDataSource pool) {
+        List<HikariDataSource> list = pools.computeIfAbsent(workload, w -> new ArrayList<>(
+                Collections.nCopies(count, (HikariDataSource) null)));
+        list.set(index, pool);
+    }
+
+    /** A connection from the next available replica, or null if none is up. */
+    Connection connection(Workload workload) {
+        List<HikariDataSource> list = pools.get(workload);
+        int start = Math.floorMod(next.getAndIncrement(), count);
+        for (int k = 0; k < count; k++) {
+            int i = (start + k) % count;
+            if (System.currentTimeMillis() < downUntil.get(i)) continue;
+            try {
+                return list.get(i).getConnection();
+            } catch (SQLException e) {
+                downUntil.set(i, System.currentTimeMillis() + retryMillis);
+            }
+        }
+        return null;
+    }
+
+    void close() {
+        for (List<HikariDataSource> list : pools.values()) {
+            for (HikariDataSource pool : list) {
+                if (!pool.isClosed()) pool.close();
+            }
+        }
+    }
+}
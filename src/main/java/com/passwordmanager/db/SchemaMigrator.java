@@ -0,0 +1,418 @@
+package com.passwordmanager.db;
+
+import com.passwordmanager.dao.HistoryDAO;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Versioned schema migrations.
+ *
+ * The schema version lives in vault_meta under {@value #VERSION_KEY}. On startup the
+ * stored version is read with one query and only the migrations above it are applied,
+ * each followed by a version bump, so a warm start runs no DDL at all.
+ *
+ * Migrations are append-only: never edit a released step, add a new one instead.
+ * Steps must tolerate being re-run (MySQL DDL is not transactional, so a crash can
+ * happen between a step and its version bump).
+ */
+final class SchemaMigrator {
+
+    static final String VERSION_KEY = "schema_version";
+
+    @FunctionalInterface
+    private interface Step { void apply(Connection c) throws SQLException; }
+
+    private record Migration(int version, String description, Step step) {}
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "baseline schema",            SchemaMigrator::baseline),
+            new Migration(2, "indexes for entry listings", SchemaMigrator::listIndexes),
+            new Migration(3, "dictionary-encoded field keys", SchemaMigrator::fieldKeyIds),
+            new Migration(4, "entry versions for optimistic locking", SchemaMigrator::entryVersions),
+            new Migration(5, "history sequence on the history rows", SchemaMigrator::historySeqPerRow),
+            new Migration(6, "case-sensitive field key names", SchemaMigrator::binaryFieldKeyNames)
+    );
+
+    /** "Table not found" SQL states; H2 reports a completely empty database as 42S04. */
+    private static final Set<String> TABLE_MISSING = Set.of("42S02", "42S04");
+
+    private SchemaMigrator() {}
+
+    /** Applies every migration newer than the stored schema version. */
+    static void migrate(Connection c) throws SQLException {
+        int current = currentVersion(c);
+        for (Migration m : MIGRATIONS) {
+            if (m.version() <= current) continue;
+            m.step().apply(c);
+            setVersion(c, m.version());
+        }
+    }
+
+    // ── Version bookkeeping ───────────────────────────────────────────────────
+
+    private static int currentVersion(Connection c) throws SQLException {
+        String sql = "SELECT value FROM vault_meta WHERE key_name = ?";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, VERSION_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Integer.parseInt(rs.getString(1)) : 0;
+            }
+        } catch (SQLException e) {
+            if (TABLE_MISSING.contains(e.getSQLState())) return 0;   // no vault_meta yet: empty database
+            throw e;
+        }
+    }
+
+    private static void setVersion(Connection c, int version) throws SQLException {
+        String sql = "INSERT INTO vault_meta (key_name, value) VALUES (?, ?) "
+                   + "ON DUPLICATE KEY UPDATE value = VALUES(value)";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, VERSION_KEY);
+            ps.setString(2, String.valueOf(version));
+            ps.executeUpdate();
+        }
+    }
+
+    // ── 1: baseline ───────────────────────────────────────────────────────────
+
+    /**
+     * The schema as it stood before versioning. Vaults created by earlier releases have
+     * no version row, so this also upgrades them: tables are created if missing and
+     * columns added after the first release are added where absent.
+     */
+    private static void baseline(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
+
+            // Vault-level metadata (salt, iterations, TOTP secret, etc.)
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS vault_meta (
+                    key_name  VARCHAR(64)  NOT NULL,
+                    value     TEXT         NOT NULL,
+                    value_bin VARBINARY(1024),
+                    PRIMARY KEY (key_name)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+
+            // Entry type lookup
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS entry_types (
+                    id    INT          NOT NULL AUTO_INCREMENT,
+                    name  VARCHAR(32)  NOT NULL,
+                    PRIMARY KEY (id),
+                    UNIQUE KEY uq_entry_types_name (name)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+
+            // Seed entry types
+            s.executeUpdate("""
+                INSERT IGNORE INTO entry_types (name) VALUES
+                    ('LOGIN'), ('NOTE'), ('CARD'), ('IDENTITY')
+                """);
+
+            // User-defined categories
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS categories (
+                    id    INT          NOT NULL AUTO_INCREMENT,
+                    name  VARCHAR(64)  NOT NULL,
+                    PRIMARY KEY (id),
+                    UNIQUE KEY uq_categories_name (name)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+
+            // User-defined tags
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS tags (
+                    id    INT          NOT NULL AUTO_INCREMENT,
+                    name  VARCHAR(64)  NOT NULL,
+                    PRIMARY KEY (id),
+                    UNIQUE KEY uq_tags_name (name)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+
+            // Main entries
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS entries (
+                    id           BIGINT       NOT NULL AUTO_INCREMENT,
+                    type_id      INT          NOT NULL,
+                    title        VARCHAR(255) NOT NULL,
+                    category_id  INT,
+                    favorite     TINYINT(1)   NOT NULL DEFAULT 0,
+                    fields_enc   MEDIUMBLOB,
+                    fields_key_version INT    NOT NULL DEFAULT 1,
+                    history_seq  INT          NOT NULL DEFAULT 0,
+                    created_at   BIGINT       NOT NULL,
+                    updated_at   BIGINT       NOT NULL,
+                    PRIMARY KEY (id),
+                    INDEX idx_entries_title (title),
+                    CONSTRAINT fk_entries_type     FOREIGN KEY (type_id)     REFERENCES entry_types(id),
+                    CONSTRAINT fk_entries_category FOREIGN KEY (category_id) REFERENCES categories(id) ON DELETE SET NULL
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+
+            // Encrypted field store (flexible per-type key-value pairs)
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS entry_fields (
+                    id         BIGINT       NOT NULL AUTO_INCREMENT,
+                    entry_id   BIGINT       NOT NULL,
+                    field_key  VARCHAR(64)  NOT NULL,
+                    value_enc  BLOB         NOT NULL,
+                    key_version INT         NOT NULL DEFAULT 1,
+                    PRIMARY KEY (id),
+                    UNIQUE KEY uq_entry_fields (entry_id, field_key),
+                    CONSTRAINT fk_fields_entry FOREIGN KEY (entry_id) REFERENCES entries(id) ON DELETE CASCADE
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+
+            // Password history (LOGIN entries only): a ring of HistoryDAO.MAX_HISTORY slots per entry
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS password_history (
+                    id          BIGINT  NOT NULL AUTO_INCREMENT,
+                    entry_id    BIGINT  NOT NULL,
+                    slot        TINYINT NOT NULL,
+                    value_enc   BLOB    NOT NULL,
+                    key_version INT     NOT NULL DEFAULT 1,
+                    changed_at  BIGINT  NOT NULL,
+                    PRIMARY KEY (entry_id, slot),
+                    UNIQUE KEY uq_history_id (id),
+                    INDEX idx_history_entry (entry_id),
+                    CONSTRAINT fk_history_entry FOREIGN KEY (entry_id) REFERENCES entries(id) ON DELETE CASCADE
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+
+            // Entry ↔ Tag (many-to-many)
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS entry_tags (
+                    entry_id  BIGINT  NOT NULL,
+                    tag_id    INT     NOT NULL,
+                    PRIMARY KEY (entry_id, tag_id),
+                    CONSTRAINT fk_et_entry FOREIGN KEY (entry_id) REFERENCES entries(id) ON DELETE CASCADE,
+                    CONSTRAINT fk_et_tag   FOREIGN KEY (tag_id)   REFERENCES tags(id)    ON DELETE CASCADE
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+
+            // Backup codes (bcrypt-hashed one-time codes)
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS backup_codes (
+                    id         INT          NOT NULL AUTO_INCREMENT,
+                    code_hash  VARCHAR(60)  NOT NULL,
+                    used       TINYINT(1)   NOT NULL DEFAULT 0,
+                    PRIMARY KEY (id)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+
+            // Columns added after the first release
+            addColumnIfMissing(c, "entry_fields",     "key_version", "INT NOT NULL DEFAULT 1 AFTER value_enc");
+            addColumnIfMissing(c, "password_history", "key_version", "INT NOT NULL DEFAULT 1 AFTER value_enc");
+            addColumnIfMissing(c, "entries",          "fields_enc",  "MEDIUMBLOB AFTER favorite");
+            addColumnIfMissing(c, "vault_meta",       "value_bin",   "VARBINARY(1024) AFTER value");
+            addColumnIfMissing(c, "entries",          "fields_key_version", "INT NOT NULL DEFAULT 1 AFTER fields_enc");
+            addColumnIfMissing(c, "entries",          "history_seq", "INT NOT NULL DEFAULT 0 AFTER fields_key_version");
+            if (!columnExists(c, "password_history", "slot")) migrateHistoryToSlots(c);
+        }
+    }
+
+    // ── 2: list indexes ───────────────────────────────────────────────────────
+
+    /**
+     * Composite indexes for the EntryDAO listings: each filter column is followed by
+     * title, so the filtered lists come back already in ORDER BY title order.
+     */
+    private static void listIndexes(Connection c) throws SQLException {
+        addIndexIfMissing(c, "entries", "idx_entries_category_title", "category_id, title", false);
+        addIndexIfMissing(c, "entries", "idx_entries_favorite_title", "favorite, title",    false);
+        addIndexIfMissing(c, "entries", "idx_entries_type_title",     "type_id, title",     false);
+    }
+
+    // ── 3: field key ids ──────────────────────────────────────────────────────
+
+    /**
+     * Replaces entry_fields.field_key (a VARCHAR repeated in every row and in the unique
+     * index) with a SMALLINT id into a new field_keys table.
+     */
+    private static void fieldKeyIds(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
+            s.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS field_keys (
+                    id    SMALLINT     NOT NULL AUTO_INCREMENT,
+                    name  VARCHAR(64)  NOT NULL,
+                    PRIMARY KEY (id),
+                    UNIQUE KEY uq_field_keys_name (name)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+            addColumnIfMissing(c, "entry_fields", "field_key_id", "SMALLINT AFTER entry_id");
+            if (!columnExists(c, "entry_fields", "field_key")) return;   // already converted
+
+            s.executeUpdate("INSERT IGNORE INTO field_keys (name) SELECT DISTINCT field_key FROM entry_fields");
+            s.executeUpdate("""
+                UPDATE entry_fields SET field_key_id =
+                    (SELECT k.id FROM field_keys k WHERE k.name = entry_fields.field_key)
+                WHERE field_key_id IS NULL
+                """);
+            addIndexIfMissing(c, "entry_fields", "uq_entry_fields_key", "entry_id, field_key_id", true);
+            s.executeUpdate("ALTER TABLE entry_fields DROP INDEX uq_entry_fields");
+            s.executeUpdate("ALTER TABLE entry_fields DROP COLUMN field_key");
+            s.executeUpdate("ALTER TABLE entry_fields MODIFY field_key_id SMALLINT NOT NULL");
+        }
+    }
+
+    /** Adds entries.version, bumped by every write to an entry so saves can compare-and-set. */
+    private static void entryVersions(Connection c) throws SQLException {
+        addColumnIfMissing(c, "entries", "version", "INT NOT NULL DEFAULT 0 AFTER history_seq");
+    }
+
+    // ── 5: history sequence per row ───────────────────────────────────────────
+
+    /**
+     * Moves the history counter from entries.history_seq onto each password_history row,
+     * so a save can pick its slot in the same statement that writes it, and drops
+     * idx_history_entry, which only repeats the leading column of the primary key.
+     * The id column stays: key rotation pages through the table by it.
+     */
+    private static void historySeqPerRow(Connection c) throws SQLException {
+        int max = HistoryDAO.MAX_HISTORY;
+        addColumnIfMissing(c, "password_history", "seq", "INT NOT NULL DEFAULT 0 AFTER slot");
+        try (Statement s = c.createStatement()) {
+            if (columnExists(c, "entries", "history_seq")) {
+                // Slot s holds the newest save numbered s modulo MAX_HISTORY
+                s.executeUpdate("""
+                    UPDATE password_history SET seq =
+                        (SELECT e.history_seq - 1 - MOD(e.history_seq - 1 - password_history.slot + %d, %d)
+                         FROM entries e WHERE e.id = password_history.entry_id)
+                    """.formatted(max, max));
+                s.executeUpdate("ALTER TABLE entries DROP COLUMN history_seq");
+            }
+            // The foreign key may own the index (H2 does), so it is re-created around the drop
+            if (indexExists(c, "password_history", "idx_history_entry")) {
+                if (foreignKeyExists(c, "password_history", "fk_history_entry")) {
+                    s.executeUpdate("ALTER TABLE password_history DROP FOREIGN KEY fk_history_entry");
+                }
+                s.executeUpdate("ALTER TABLE password_history DROP INDEX idx_history_entry");
+            }
+            if (!foreignKeyExists(c, "password_history", "fk_history_entry")) {
+                s.executeUpdate("ALTER TABLE password_history ADD CONSTRAINT fk_history_entry "
+                        + "FOREIGN KEY (entry_id) REFERENCES entries(id) ON DELETE CASCADE");
+            }
+        }
+    }
+
+    // ── 6: case-sensitive field key names ─────────────────────────────────────
+
+    /**
+     * Gives field_keys.name a binary collation. Under the default case-insensitive one,
+     * "Password" and "password" shared an id and read back as whichever was stored first.
+     */
+    private static void binaryFieldKeyNames(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
+            s.executeUpdate("ALTER TABLE field_keys MODIFY name VARCHAR(64) NOT NULL COLLATE utf8mb4_bin");
+        }
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static void addIndexIfMissing(Connection c, String table, String index, String columns,
+                                          boolean unique) throws SQLException {
+        if (indexExists(c, table, index)) return;
+        try (Statement s = c.createStatement()) {
+            s.executeUpdate("CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + index
+                    + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    private static void addColumnIfMissing(Connection c, String table, String column, String definition)
+            throws SQLException {
+        if (columnExists(c, table, column)) return;
+        try (Statement s = c.createStatement()) {
+            s.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    private static boolean indexExists(Connection c, String table, String index) throws SQLException {
+        try (ResultSet rs = c.getMetaData().getIndexInfo(c.getCatalog(), c.getSchema(), table, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean foreignKeyExists(Connection c, String table, String name) throws SQLException {
+        try (ResultSet rs = c.getMetaData().getImportedKeys(c.getCatalog(), c.getSchema(), table)) {
+            while (rs.next()) {
+                if (name.equalsIgnoreCase(rs.getString("FK_NAME"))) return true;
+            }
+        }
+        return false;
+    }
+
+    /** Uses JDBC metadata rather than information_schema, whose layout differs between backends. */
+    private static boolean columnExists(Connection c, String table, String column) throws SQLException {
+        try (ResultSet rs = c.getMetaData().getColumns(c.getCatalog(), c.getSchema(), table, column)) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Converts password_history from append-and-prune rows to fixed slots: each entry keeps
+     * its newest MAX_HISTORY rows, numbered oldest-first, and entries.history_seq is set so
+     * the next save overwrites the oldest of them.
+     */
+    private static void migrateHistoryToSlots(Connection c) throws SQLException {
+        int max = HistoryDAO.MAX_HISTORY;
+        try (Statement s = c.createStatement()) {
+            s.executeUpdate("ALTER TABLE password_history ADD COLUMN slot TINYINT AFTER entry_id");
+        }
+
+        // entryId → row ids, newest first
+        Map<Long, List<Long>> rows = new LinkedHashMap<>();
+        try (Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery(
+                     "SELECT id, entry_id FROM password_history ORDER BY entry_id, changed_at DESC, id DESC")) {
+            while (rs.next()) {
+                rows.computeIfAbsent(rs.getLong("entry_id"), id -> new ArrayList<>()).add(rs.getLong("id"));
+            }
+        }
+
+        c.setAutoCommit(false);
+        try (PreparedStatement slot = c.prepareStatement("UPDATE password_history SET slot = ? WHERE id = ?");
+             PreparedStatement del  = c.prepareStatement("DELETE FROM password_history WHERE id = ?");
+             PreparedStatement seq  = c.prepareStatement("UPDATE entries SET history_seq = ? WHERE id = ?")) {
+            for (Map.Entry<Long, List<Long>> e : rows.entrySet()) {
+                List<Long> ids  = e.getValue();
+                int        kept = Math.min(ids.size(), max);
+                for (int i = 0; i < ids.size(); i++) {
+                    if (i < kept) {
+                        slot.setInt(1, kept - 1 - i);
+                        slot.setLong(2, ids.get(i));
+                        slot.addBatch();
+                    } else {
+                        del.setLong(1, ids.get(i));
+                        del.addBatch();
+                    }
+                }
+                seq.setInt(1, kept);
+                seq.setLong(2, e.getKey());
+                seq.addBatch();
+            }
+            slot.executeBatch();
+            del.executeBatch();
+            seq.executeBatch();
+            c.commit();
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
+        }
+
+        try (Statement s = c.createStatement()) {
+            s.executeUpdate("""
+                ALTER TABLE password_history
+                    MODIFY slot TINYINT NOT NULL,
+                    ADD UNIQUE KEY uq_history_id (id),
+                    DROP PRIMARY KEY,
+                    ADD PRIMARY KEY (entry_id, slot)
+                """);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.passwordmanager.db;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * One database transaction spanning several DAO calls on the current thread.
+ *
+ * While a unit is active, {@link DatabaseManager#getConnection()} hands every DAO the same
+ * connection. DAOs keep their usual try-with-resources and manual-transaction code: on
+ * the shared connection {@code close()}, {@code commit()}, {@code rollback()} and
+ * {@code setAutoCommit()} are no-ops, and the unit commits once at the end (or rolls
+ * everything back if the work throws). Prepared statements are cached per SQL string
+ * for the life of the unit, so a statement used several times is only prepared once.
+ *
+ * Usage:
+ *   UnitOfWork.call(() -> { long id = entryDAO.insert(...); fieldDAO.setFields(id, ...); return id; });
+ *   UnitOfWork.run(() -> entryDAO.delete(id));
+ *
+ * Nested calls join the outer unit.
+ */
+public final class UnitOfWork {
+
+    @FunctionalInterface
+    public interface Work<T> { T call() throws Exception; }
+
+    @FunctionalInterface
+    public interface Action { void run() throws Exception; }
+
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final Connection                     connection;
+    private final Connection                     shared;
+    private final Map<String, PreparedStatement> statements  = new HashMap<>();   // SQL → cached proxy
+    private final List<PreparedStatement>        prepared    = new ArrayList<>(); // the real statements
+    private final List<Runnable>                 afterCommit = new ArrayList<>();
+
+    private UnitOfWork(Connection connection) {
+        this.connection = connection;
+        this.shared     = (Connection) Proxy.newProxyInstance(
+                UnitOfWork.class.getClassLoader(), new Class<?>[]{Connection.class}, this::onConnection);
+    }
+
+    // ── Entry points ──────────────────────────────────────────────────────────
+
+    public static <T> T call(Work<T> work) throws Exception {
+        if (CURRENT.get() != null) return work.call();
+
+        try (Connection c = DatabaseManager.poolConnection(Workload.current())) {
+            UnitOfWork unit = new UnitOfWork(c);
+            c.setAutoCommit(false);
+            CURRENT.set(unit);
+            try {
+                T result = work.call();
+                c.commit();
+                unit.afterCommit.forEach(Runnable::run);
+                return result;
+            } catch (Throwable t) {
+                c.rollback();
+                throw t;
+            } finally {
+                CURRENT.remove();
+                unit.closeStatements();
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    public static void run(Action action) throws Exception {
+        call(() -> { action.run(); return null; });
+    }
+
+    /**
+     * Runs {@code hook} once the current unit commits (dropped on rollback), or
+     * immediately when no unit is active. Used to keep in-memory caches in step.
+     */
+    public static void afterCommit(Runnable hook) {
+        UnitOfWork unit = CURRENT.get();
+        if (unit == null) hook.run(); else unit.afterCommit.add(hook);
+    }
+
+    /** The shared connection of the active unit, or null. */
+    static Connection current() {
+        UnitOfWork unit = CURRENT.get();
+        return unit != null ? unit.shared : null;
+    }
+
+    // ── Shared connection ─────────────────────────────────────────────────────
+
+    private Object onConnection(Object proxy, Method m, Object[] args) throws Throwable {
+        switch (m.getName()) {
+            case "close", "commit", "setAutoCommit":
+                return null;                       // the unit owns the connection and transaction
+            case "rollback":
+                if (args == null) return null;     // rollback(Savepoint) still goes through
+                break;
+            case "getAutoCommit":
+                return false;
+            case "prepareStatement":
+                if (args.length == 1 || args.length == 2 && args[1] instanceof Integer) {
+                    return cachedStatement(args);
+                }
+                break;
+            case "unwrap":
+                if (args[0] == Connection.class) return proxy;
+                break;
+            default:
+        }
+        return invoke(connection, m, args);
+    }
+
+    private PreparedStatement cachedStatement(Object[] args) throws SQLException {
+        String key = args.length == 1 ? (String) args[0] : args[1] + ":" + args[0];
+        PreparedStatement ps = statements.get(key);
+        if (ps == null) {
+            PreparedStatement real = args.length == 1
+                    ? connection.prepareStatement((String) args[0])
+                    : connection.prepareStatement((String) args[0], (Integer) args[1]);
+            ps = (PreparedStatement) Proxy.newProxyInstance(UnitOfWork.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (p, m, a) -> onStatement(real, m, a));
+            statements.put(key, ps);
+            prepared.add(real);
+        }
+        return ps;
+    }
+
+    private static Object onStatement(PreparedStatement real, Method m, Object[] args) throws Throwable {
+        switch (m.getName()) {
+            case "close":
+                // Back to the cache: reset state instead of closing
+                real.clearParameters();
+                real.clearBatch();
+                return null;
+            case "isClosed":
+                return false;
+            default:
+                return invoke(real, m, args);
+        }
+    }
+
+    private void closeStatements() {
+        for (PreparedStatement ps : prepared) {
+            try { ps.close(); } catch (SQLException ignored) {}
+        }
+        prepared.clear();
+        statements.clear();
+    }
+
+    private static Object invoke(Object target, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
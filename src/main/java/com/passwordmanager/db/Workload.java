@@ -0,0 +1,65 @@
+package com.passwordmanager.db;
+
+/**
+ * Class of database work, each served by its own connection pool so that long-running
+ * jobs can never take the connections the UI needs.
+ *
+ * A DAO method that is inherently bulk (a full-vault scan, a rotation batch) asks for
+ * {@code DatabaseManager.getConnection(Workload.BULK)}; everything else uses the
+ * thread's current workload, which is INTERACTIVE unless a service wraps a job in
+ * {@link #call} / {@link #run}:
+ *
+ *   Workload.BULK.call(() -> importEntries(...));
+ *
+ * Sizing comes from {@code db.pool.<name>.size} and {@code db.pool.<name>.timeoutMillis}.
+ */
+public enum Workload {
+
+    /** UI-driven reads and single-entry writes: short and latency-sensitive. */
+    INTERACTIVE("interactive", "PM-Pool", 6, 5_000, true),
+
+    /** Imports, exports, audits and key rotation: long-running and throughput-bound. */
+    BULK("bulk", "PM-Bulk", 4, 60_000, false);
+
+    private static final ThreadLocal<Workload> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    private final String  configName;
+    private final String  poolName;
+    private final int     defaultSize;
+    private final int     defaultTimeoutMillis;
+    private final boolean keepIdle;   // hold connections open between uses
+
+    Workload(String configName, String poolName, int defaultSize, int defaultTimeoutMillis, boolean keepIdle) {
+        this.configName           = configName;
+        this.poolName             = poolName;
+        this.defaultSize          = defaultSize;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        this.keepIdle             = keepIdle;
+    }
+
+    /** The workload DAO calls on this thread are attributed to. */
+    public static Workload current() {
+        return CURRENT.get();
+    }
+
+    /** Runs {@code work} with this workload as the thread's current one. */
+    public <T> T call(UnitOfWork.Work<T> work) throws Exception {
+        Workload previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.call();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public void run(UnitOfWork.Action action) throws Exception {
+        call(() -> { action.run(); return null; });
+    }
+
+    String  configName()           { return configName; }
+    String  poolName()             { return poolName; }
+    int     defaultSize()          { return defaultSize; }
+    int     defaultTimeoutMillis() { return defaultTimeoutMillis; }
+    boolean keepIdle()             { return keepIdle; }
+}
@@ -0,0 +1,52 @@
+package com.passwordmanager.db;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.Set;
+
+/**
+ * Wraps a primary connection so that writes made through it are reported, letting
+ * {@link DatabaseManager} keep reads on the primary only after the app has actually
+ * written something (read-your-writes), not after every primary checkout.
+ *
+ * A write is an update/batch/execute call on one of the connection's statements, or a
+ * commit. Queries ({@code executeQuery}) are not writes. Only used when read replicas
+ * are configured, so a single-database setup pays nothing for it.
+ */
+final class WriteTracker {
+
+    private static final Set<String> WRITES = Set.of(
+            "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch", "execute");
+
+    private WriteTracker() {}
+
+    static Connection wrap(Connection connection, Runnable onWrite) {
+        return (Connection) Proxy.newProxyInstance(WriteTracker.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, m, args) -> {
+                    Object result = invoke(connection, m, args);
+                    switch (m.getName()) {
+                        case "commit" -> onWrite.run();
+                        case "createStatement", "prepareStatement", "prepareCall" ->
+                                result = wrapStatement((Statement) result, m.getReturnType(), onWrite);
+                        default -> { }
+                    }
+                    return result;
+                });
+    }
+
+    private static Object wrapStatement(Statement statement, Class<?> type, Runnable onWrite) {
+        return Proxy.newProxyInstance(WriteTracker.class.getClassLoader(), new Class<?>[]{type}, (proxy, m, args) -> {
+            Object result = invoke(statement, m, args);
+            if (WRITES.contains(m.getName())) onWrite.run();
+            return result;
+        });
+    }
+
+    private static Object invoke(Object target, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
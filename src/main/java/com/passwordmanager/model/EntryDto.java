@@ -16,6 +16,7 @@ public class EntryDto {
     private List<String>      tags   = new ArrayList<>();
     private long              createdAt;
     private long              updatedAt;
+    private int               version;   // entries.version when loaded; saves require it unchanged
 
     public EntryDto() {}
 
@@ -58,4 +59,7 @@ public class EntryDto {
 
     public long               getUpdatedAt()                  { return updatedAt; }
     public void               setUpdatedAt(long t)            { this.updatedAt = t; }
+
+    public int                getVersion()                    { return version; }
+    public void               setVersion(int v)               { this.version = v; }
 }
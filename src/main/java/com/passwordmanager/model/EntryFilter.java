@@ -0,0 +1,29 @@
+package com.passwordmanager.model;
+
+/**
+ * Which entries the centre-panel list shows: everything, favourites, one category
+ * or a title search. Used by the paged listing queries.
+ */
+public final class EntryFilter {
+
+    public enum Kind { ALL, FAVORITES, CATEGORY, SEARCH }
+
+    private final Kind   kind;
+    private final int    categoryId;   // CATEGORY only
+    private final String text;         // SEARCH only
+
+    private EntryFilter(Kind kind, int categoryId, String text) {
+        this.kind       = kind;
+        this.categoryId = categoryId;
+        this.text       = text;
+    }
+
+    public static EntryFilter all()                    { return new EntryFilter(Kind.ALL, 0, null); }
+    public static EntryFilter favorites()              { return new EntryFilter(Kind.FAVORITES, 0, null); }
+    public static EntryFilter category(int categoryId) { return new EntryFilter(Kind.CATEGORY, categoryId, null); }
+    public static EntryFilter search(String text)      { return new EntryFilter(Kind.SEARCH, 0, text); }
+
+    public Kind   getKind()       { return kind; }
+    public int    getCategoryId() { return categoryId; }
+    public String getText()       { return text; }
+}
@@ -4,11 +4,11 @@ package com.passwordmanager.model;
 public class PasswordHistory {
     private long   id;
     private long   entryId;
-    private String password;   // decrypted; never persisted in this form
+    private CharSequence password;   // decrypted view (SecretArena); never persisted in this form
     private long   changedAt;  // epoch millis
 
     public PasswordHistory() {}
-    public PasswordHistory(long id, long entryId, String password, long changedAt) {
+    public PasswordHistory(long id, long entryId, CharSequence password, long changedAt) {
         this.id        = id;
         this.entryId   = entryId;
         this.password  = password;
@@ -19,8 +19,8 @@ public class PasswordHistory {
     public void   setId(long id)       { this.id = id; }
     public long   getEntryId()         { return entryId; }
     public void   setEntryId(long e)   { this.entryId = e; }
-    public String getPassword()        { return password; }
-    public void   setPassword(String p){ this.password = p; }
+    public CharSequence getPassword()  { return password; }
+    public void   setPassword(CharSequence p) { this.password = p; }
     public long   getChangedAt()       { return changedAt; }
     public void   setChangedAt(long t) { this.changedAt = t; }
 }
@@ -15,14 +15,18 @@ public class AppContext {
     private final PasswordGenerator   passwordGenerator;
     private final ClipboardManager    clipboardManager;
     private final ImportExportService importExportService;
+    private final KeyRotationService  keyRotationService;
+    private final QuickUnlockService  quickUnlockService;
 
     private AppContext() {
         authService         = new AuthService();
         vaultService        = new VaultService();
-        auditService        = new AuditService();
+        auditService        = new AuditService(authService.getSecretArena());
         passwordGenerator   = new PasswordGenerator();
         clipboardManager    = new ClipboardManager();
-        importExportService = new ImportExportService(vaultService);
+        importExportService = new ImportExportService(vaultService, authService.getExportKeyCache());
+        keyRotationService  = new KeyRotationService(authService);
+        quickUnlockService  = new QuickUnlockService(authService);
     }
 
     public static AppContext getInstance() {
@@ -36,4 +40,6 @@ public class AppContext {
     public PasswordGenerator   getPasswordGenerator()   { return passwordGenerator; }
     public ClipboardManager    getClipboardManager()    { return clipboardManager; }
     public ImportExportService getImportExportService() { return importExportService; }
+    public KeyRotationService  getKeyRotationService()  { return keyRotationService; }
+    public QuickUnlockService  getQuickUnlockService()  { return quickUnlockService; }
 }
@@ -1,9 +1,18 @@
 package com.passwordmanager.service;
 
+import com.passwordmanager.crypto.SecretArena;
+import com.passwordmanager.crypto.SecretChars;
 import com.passwordmanager.dao.*;
 import com.passwordmanager.model.*;
 
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.*;
 
 /**
@@ -15,65 +24,72 @@ import java.util.*;
  *   - OLD_PASSWORD    : updatedAt > 90 days ago
  *   - MISSING_URL     : url field is blank
  *   - MISSING_TOTP    : totp field is blank
+ *
+ * Decrypted fields live in a scope of the session's {@link SecretArena} that is wiped
+ * after each scan batch. The reuse check only keeps a keyed digest of each password,
+ * under a random key that is discarded when the run ends; only titles and issue types
+ * leave this class.
  */
 public class AuditService {
 
     private static final long NINETY_DAYS_MS = 90L * 24 * 60 * 60 * 1000;
 
-    private final EntryDAO         entryDAO    = new EntryDAO();
     private final FieldDAO         fieldDAO    = new FieldDAO();
     private final PasswordGenerator generator  = new PasswordGenerator();
+    private final SecretArena      secrets;
+
+    public AuditService(SecretArena secrets) {
+        this.secrets = secrets;
+    }
 
     public List<AuditResult> run(SecretKey key) throws Exception {
-        List<Entry> logins = entryDAO.findAllLogins();
         List<AuditResult> results = new ArrayList<>();
-        Map<String, List<String>> passwordToTitles = new HashMap<>();
+        Map<ByteBuffer, List<EntryListItem>> passwordToEntries = new HashMap<>();
+        Mac digest = newPasswordDigest();
+        long now = System.currentTimeMillis();
 
-        for (Entry e : logins) {
-            Map<String, String> fields = fieldDAO.getFields(e.getId(), key);
-            String password = fields.getOrDefault("password", "");
-            String url      = fields.getOrDefault("url", "");
-            String totp     = fields.getOrDefault("totp", "");
+        // Stream every LOGIN entry; fields are decrypted in batches on the crypto worker pool
+        // and wiped after each batch
+        fieldDAO.forEachSecretByType(EntryType.LOGIN, key, secrets, (e, fields) -> {
+            SecretChars password = fields.get("password");
+            boolean hasPassword  = isPresent(password);
+            boolean hasUrl       = isPresent(fields.get("url"));
+            boolean hasTotp      = isPresent(fields.get("totp"));
 
             // Weak password
-            if (!password.isBlank() && generator.strength(password) < 2) {
+            if (hasPassword && generator.strength(password) < 2) {
                 results.add(new AuditResult(e.getId(), e.getTitle(), AuditResult.Issue.WEAK_PASSWORD));
             }
 
             // Old password
-            long age = System.currentTimeMillis() - e.getUpdatedAt();
+            long age = now - e.getUpdatedAt();
             if (age > NINETY_DAYS_MS) {
                 results.add(new AuditResult(e.getId(), e.getTitle(), AuditResult.Issue.OLD_PASSWORD));
             }
 
             // Missing URL
-            if (url.isBlank()) {
+            if (!hasUrl) {
                 results.add(new AuditResult(e.getId(), e.getTitle(), AuditResult.Issue.MISSING_URL));
             }
 
             // Missing TOTP
-            if (totp.isBlank()) {
+            if (!hasTotp) {
                 results.add(new AuditResult(e.getId(), e.getTitle(), AuditResult.Issue.MISSING_TOTP));
             }
 
-            // Track for reuse check
-            if (!password.isBlank()) {
-                passwordToTitles.computeIfAbsent(password, k -> new ArrayList<>()).add(e.getTitle());
+            // Track for reuse check (only a digest of the password outlives the batch)
+            if (hasPassword) {
+                passwordToEntries.computeIfAbsent(digest(digest, password), k -> new ArrayList<>()).add(e);
             }
-        }
+        });
 
         // Reused passwords
         Set<String> flaggedTitles = new HashSet<>();
-        for (Map.Entry<String, List<String>> pw : passwordToTitles.entrySet()) {
-            if (pw.getValue().size() >= 2) {
-                for (String title : pw.getValue()) {
-                    if (flaggedTitles.add(title)) {
-                        // Find the corresponding entry id for this title
-                        logins.stream()
-                              .filter(e -> e.getTitle().equals(title))
-                              .findFirst()
-                              .ifPresent(e -> results.add(new AuditResult(
-                                      e.getId(), e.getTitle(), AuditResult.Issue.REUSED_PASSWORD)));
+        for (List<EntryListItem> sharing : passwordToEntries.values()) {
+            if (sharing.size() >= 2) {
+                for (EntryListItem e : sharing) {
+                    if (flaggedTitles.add(e.getTitle())) {
+                        results.add(new AuditResult(e.getId(), e.getTitle(), AuditResult.Issue.REUSED_PASSWORD));
                     }
                 }
             }
@@ -81,4 +97,32 @@ public class AuditService {
 
         return results;
     }
+
+    /** HMAC-SHA256 under a random key that lives only as long as one audit run. */
+    private static Mac newPasswordDigest() throws GeneralSecurityException {
+        byte[] runKey = new byte[32];
+        new SecureRandom().nextBytes(runKey);
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(runKey, "HmacSHA256"));
+            return mac;
+        } finally {
+            Arrays.fill(runKey, (byte) 0);
+        }
+    }
+
+    private static ByteBuffer digest(Mac mac, SecretChars password) {
+        ByteBuffer utf8 = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        try {
+            mac.update(utf8);
+            return ByteBuffer.wrap(mac.doFinal());
+        } finally {
+            utf8.clear();
+            while (utf8.hasRemaining()) utf8.put((byte) 0);
+        }
+    }
+
+    private static boolean isPresent(SecretChars value) {
+        return value != null && !value.isBlank();
+    }
 }
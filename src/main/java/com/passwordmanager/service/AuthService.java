@@ -1,63 +1,87 @@
 package com.passwordmanager.service;
 
+import com.passwordmanager.config.ConfigLoader;
 import com.passwordmanager.crypto.*;
 import com.passwordmanager.dao.*;
 
 import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
 import java.util.*;
 
 /**
  * Handles all authentication concerns:
  *   - First-run vault setup (master password + TOTP enrollment + backup codes)
  *   - Two-step unlock (master password → TOTP/backup code)
- *   - Session key management (holds derived AES key in memory)
+ *   - Session key management (holds the unwrapped vault data key in memory)
+ *   - Ownership of the session's {@link SecretArena} for decrypted values
  *   - Rate-limiting on failed attempts
  */
 public class AuthService {
 
     // ── Meta keys ─────────────────────────────────────────────────────────────
     private static final String KEY_SALT        = "kdf_salt";
-    private static final String KEY_ITERATIONS  = "kdf_iterations";
     private static final String KEY_TOTP_SECRET = "totp_secret_enc";
-    private static final int    DEFAULT_ITER    = 200_000;
+    private static final String KEY_DEK_WRAPPED = "dek_wrapped";        // version 1; later versions get a _v<N> suffix
+    private static final String KEY_DEK_VERSION = "dek_version";
+    private static final String KEY_ROTATION_FROM = "key_rotation_from";
+
+    /** Cached meta keys that decide whether a password or TOTP code is accepted. */
+    private static final List<String> UNLOCK_META = List.of("kdf_", "dek_", KEY_TOTP_SECRET, KEY_ROTATION_FROM);
+    private static final List<String> TOTP_META   = List.of(KEY_TOTP_SECRET);
 
     // ── Rate-limiting ─────────────────────────────────────────────────────────
     private static final int MAX_ATTEMPTS   = 5;
     private static final long BASE_DELAY_MS = 5_000;
 
-    private final MetaDAO       metaDAO      = new MetaDAO();
-    private final BackupCodeDAO backupDAO    = new BackupCodeDAO();
+    private final MetaDAO       metaDAO;
+    private final BackupCodeDAO backupDAO;
 
     // ── Session state (in-memory only) ────────────────────────────────────────
-    private SecretKey sessionKey;
+    private volatile KeyRing sessionKey;   // read by the key-rotation worker
+    private final SecretArena secrets = new SecretArena();   // decrypted values, wiped on lock
+    private final DerivedKeyCache exportKeys = new DerivedKeyCache();   // export/import file keys, wiped on lock
     private int  failedPasswordAttempts = 0;
     private int  failedTotpAttempts     = 0;
     private long lockedUntil            = 0;
 
+    public AuthService() {
+        this(new MetaDAO(), new BackupCodeDAO());
+    }
+
+    /** Uses the given DAOs instead of the database-backed defaults (tests). */
+    AuthService(MetaDAO metaDAO, BackupCodeDAO backupDAO) {
+        this.metaDAO   = metaDAO;
+        this.backupDAO = backupDAO;
+    }
+
     // ── Setup ─────────────────────────────────────────────────────────────────
 
     /**
-     * First-run setup: derives and stores the KDF parameters, then sets up TOTP.
+     * First-run setup: derives the key-encryption key, generates a random vault data key
+     * wrapped under it, then sets up TOTP.
      *
      * @param password master password (cleared after use)
      * @return the TOTP secret (Base32) that the user must scan
      */
     public String setupVault(char[] password) throws Exception {
         byte[] salt       = CryptoUtil.generateSalt();
-        String saltHex    = CryptoUtil.toHex(salt);
-        SecretKey key     = CryptoUtil.deriveKey(password, salt, DEFAULT_ITER);
+        KeyDerivation kdf = newKeyDerivation();
+        SecretKey kek     = kdf.derive(password, salt);
+        SecretKey dataKey = CryptoUtil.generateDataKey();
 
-        // Generate TOTP secret and encrypt it with the vault key
+        // Generate TOTP secret and encrypt it with the vault data key
         String totpSecret  = TotpUtil.generateSecret();
-        byte[] encTotp     = CryptoUtil.encryptString(totpSecret, key);
-        String encTotpHex  = CryptoUtil.toHex(encTotp);
+        byte[] encTotp     = CryptoUtil.encryptString(totpSecret, dataKey);
 
-        metaDAO.set(KEY_SALT,        saltHex);
-        metaDAO.set(KEY_ITERATIONS,  String.valueOf(DEFAULT_ITER));
-        metaDAO.set(KEY_TOTP_SECRET, encTotpHex);
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put(KEY_SALT,        salt);
+        putKdfMeta(meta, kdf);
+        meta.put(KEY_DEK_WRAPPED, CryptoUtil.wrapKey(dataKey, kek));
+        meta.put(KEY_TOTP_SECRET, encTotp);
+        metaDAO.setAll(meta);
 
         // Hold the key in session so the wizard can immediately access the vault
-        sessionKey = key;
+        sessionKey = new KeyRing(1, dataKey);
         Arrays.fill(password, '\0');
         return totpSecret;
     }
@@ -84,26 +108,53 @@ public class AuthService {
     public boolean verifyMasterPassword(char[] password) throws Exception {
         if (isLockedOut()) return false;
 
-        String saltHex = metaDAO.get(KEY_SALT);
-        int    iters   = Integer.parseInt(metaDAO.get(KEY_ITERATIONS));
-        byte[] salt    = CryptoUtil.fromHex(saltHex);
+        try {
+            KeyRing ring = unlock(password);
+            if (ring == null && metaDAO.revalidate(UNLOCK_META)) {
+                // Another client changed the password or the keys since they were cached
+                ring = unlock(password);
+            }
+            if (ring == null) {
+                sessionKey = null;
+                recordPasswordFailure();
+                return false;
+            }
+
+            // Correct password – hold the data keys for step 2
+            sessionKey             = ring;
+            failedPasswordAttempts = 0;
+            return true;
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
 
-        SecretKey candidate = CryptoUtil.deriveKey(password, salt, iters);
-        Arrays.fill(password, '\0');
+    /** The vault data keys unwrapped with {@code password}, or null if it is wrong. */
+    private KeyRing unlock(char[] password) throws Exception {
+        byte[] salt         = metaDAO.getBytes(KEY_SALT);
+        KeyDerivation kdf   = loadKeyDerivation();
+        SecretKey candidate = kdf.derive(password, salt);
+        int    current      = currentKeyVersion();
+        byte[] wrapped      = metaDAO.getBytes(wrappedKeyName(current));
 
-        // Validation: try to decrypt the TOTP secret with the candidate key
         try {
-            String encHex   = metaDAO.get(KEY_TOTP_SECRET);
-            byte[] encBytes = CryptoUtil.fromHex(encHex);
+            if (wrapped != null) {
+                // Envelope vault: the GCM tag on the wrapped data key validates the password
+                KeyRing ring = new KeyRing(current, CryptoUtil.unwrapKey(wrapped, candidate));
+                // Older versions are still present while a key rotation is in progress
+                for (int v = 1; v < current; v++) {
+                    byte[] older = metaDAO.getBytes(wrappedKeyName(v));
+                    if (older != null) ring.put(v, CryptoUtil.unwrapKey(older, candidate));
+                }
+                return ring;
+            }
+            // Legacy vault: validate by decrypting the TOTP secret with the candidate key
+            byte[] encBytes = metaDAO.getBytes(KEY_TOTP_SECRET);
             CryptoUtil.decryptString(encBytes, candidate); // throws if wrong key
-            // Correct password – hold candidate key for step 2
-            sessionKey             = candidate;
-            failedPasswordAttempts = 0;
-            return true;
-        } catch (Exception e) {
-            sessionKey = null;
-            recordPasswordFailure();
-            return false;
+            migrateToEnvelope(password, candidate, kdf);
+            return new KeyRing(1, candidate);
+        } catch (GeneralSecurityException e) {
+            return null;
         }
     }
 
@@ -114,8 +165,12 @@ public class AuthService {
         if (sessionKey == null) throw new IllegalStateException("Complete step 1 first");
         if (isLockedOut()) return false;
 
-        String totpSecret = getTotpSecret();
-        if (TotpUtil.verify(totpSecret, code)) {
+        boolean valid = TotpUtil.verify(getTotpSecret(), code);
+        if (!valid && metaDAO.revalidate(TOTP_META)) {
+            // The secret may have been re-enrolled by another client since it was cached
+            valid = TotpUtil.verify(getTotpSecret(), code);
+        }
+        if (valid) {
             failedTotpAttempts = 0;
             return true;
         }
@@ -142,7 +197,17 @@ public class AuthService {
         return sessionKey;
     }
 
-    public void lock() { sessionKey = null; }
+    /** Decrypted secrets of the current session; wiped by {@link #lock()}. */
+    public SecretArena getSecretArena() { return secrets; }
+
+    /** Password-derived export/import keys of the current session; wiped by {@link #lock()}. */
+    public DerivedKeyCache getExportKeyCache() { return exportKeys; }
+
+    public void lock() {
+        sessionKey = null;
+        secrets.wipe();
+        exportKeys.wipe();
+    }
 
     // ── Rate-limiting ─────────────────────────────────────────────────────────
 
@@ -171,8 +236,7 @@ public class AuthService {
 
     /** Returns the decrypted TOTP secret using the current session key. */
     private String getTotpSecret() throws Exception {
-        String encHex   = metaDAO.get(KEY_TOTP_SECRET);
-        byte[] encBytes = CryptoUtil.fromHex(encHex);
+        byte[] encBytes = metaDAO.getBytes(KEY_TOTP_SECRET);
         return CryptoUtil.decryptString(encBytes, sessionKey);
     }
 
@@ -184,20 +248,163 @@ public class AuthService {
         return getTotpSecret();
     }
 
-    /** Changes the master password (re-encrypts the TOTP secret with the new key). */
+    /**
+     * Changes the master password. Only the 32-byte vault data key is re-wrapped under the
+     * new password-derived key – entry data and the TOTP secret stay untouched.
+     */
     public void changeMasterPassword(char[] oldPassword, char[] newPassword) throws Exception {
         if (!verifyMasterPassword(oldPassword)) throw new SecurityException("Incorrect current password");
 
-        byte[] newSalt    = CryptoUtil.generateSalt();
-        SecretKey newKey  = CryptoUtil.deriveKey(newPassword, newSalt, DEFAULT_ITER);
-        String totpSecret = getTotpSecret();                            // decrypt with old key
-        byte[] reencTotp  = CryptoUtil.encryptString(totpSecret, newKey);
+        try {
+            byte[] newSalt   = CryptoUtil.generateSalt();
+            KeyDerivation kdf = newKeyDerivation();
+            SecretKey newKek  = kdf.derive(newPassword, newSalt);
+
+            Map<String, Object> meta = new LinkedHashMap<>();
+            meta.put(KEY_SALT,        newSalt);
+            putKdfMeta(meta, kdf);
+            for (int v : sessionKey.versions()) {
+                meta.put(wrappedKeyName(v), CryptoUtil.wrapKey(sessionKey.forVersion(v), newKek));
+            }
+            metaDAO.setAll(meta);
+        } finally {
+            Arrays.fill(newPassword, '\0');
+        }
+    }
+
+    // ── Data key rotation ─────────────────────────────────────────────────────
+
+    /**
+     * Starts a data key rotation: generates the next key version, wraps it under the
+     * master password and makes it current for all new writes. Existing rows are
+     * re-encrypted afterwards by {@link KeyRotationService}.
+     */
+    public void beginKeyRotation(char[] password) throws Exception {
+        if (isKeyRotationPending()) throw new IllegalStateException("A key rotation is already in progress");
+        try {
+            SecretKey kek = checkedKek(password);
+            if (kek == null && metaDAO.revalidate(UNLOCK_META)) kek = checkedKek(password);
+            if (kek == null) throw new SecurityException("Incorrect master password");
+
+            int current       = currentKeyVersion();
+            int next          = current + 1;
+            SecretKey nextKey = CryptoUtil.generateDataKey();
+            String totpSecret = getTotpSecret();
+
+            Map<String, Object> meta = new LinkedHashMap<>();
+            meta.put(wrappedKeyName(next), CryptoUtil.wrapKey(nextKey, kek));
+            meta.put(KEY_DEK_VERSION,      String.valueOf(next));
+            meta.put(KEY_ROTATION_FROM,    String.valueOf(current));
+            meta.put(KEY_TOTP_SECRET,      CryptoUtil.encryptString(totpSecret, nextKey));
+            metaDAO.setAll(meta);
+
+            sessionKey.put(next, nextKey);
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    /** The key-encryption key for {@code password}, or null if it does not unwrap the current data key. */
+    private SecretKey checkedKek(char[] password) throws Exception {
+        SecretKey kek = loadKeyDerivation().derive(password, metaDAO.getBytes(KEY_SALT));
+        try {
+            CryptoUtil.unwrapKey(metaDAO.getBytes(wrappedKeyName(currentKeyVersion())), kek);
+            return kek;
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    /** Drops the retired key versions once every row has been re-encrypted. */
+    void completeKeyRotation() throws Exception {
+        KeyRing ring = getKeyRing();
+        int current  = ring.currentVersion();
+        for (int v : new ArrayList<>(ring.versions())) {
+            if (v == current) continue;
+            metaDAO.delete(wrappedKeyName(v));
+            ring.remove(v);
+        }
+        metaDAO.delete(KEY_ROTATION_FROM);
+    }
+
+    public boolean isKeyRotationPending() throws Exception {
+        return metaDAO.exists(KEY_ROTATION_FROM);
+    }
+
+    /** Session key ring for services that re-encrypt across key versions. */
+    KeyRing getKeyRing() {
+        if (!isUnlocked()) throw new IllegalStateException("Vault is locked");
+        return sessionKey;
+    }
+
+    /** Reinstates data keys recovered by {@link QuickUnlockService}, skipping both unlock steps. */
+    void resumeSession(KeyRing ring) {
+        sessionKey             = ring;
+        failedPasswordAttempts = 0;
+        failedTotpAttempts     = 0;
+    }
+
+    // ── Key derivation ────────────────────────────────────────────────────────
 
-        metaDAO.set(KEY_SALT,        CryptoUtil.toHex(newSalt));
-        metaDAO.set(KEY_ITERATIONS,  String.valueOf(DEFAULT_ITER));
-        metaDAO.set(KEY_TOTP_SECRET, CryptoUtil.toHex(reencTotp));
+    /** The KDF recorded for this vault (legacy vaults without {@code kdf_id} are PBKDF2). */
+    private KeyDerivation loadKeyDerivation() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        for (String key : List.of(Pbkdf2KeyDerivation.META_ITERATIONS,
+                                  Argon2idKeyDerivation.META_MEMORY_KIB,
+                                  Argon2idKeyDerivation.META_PARALLELISM)) {
+            String value = metaDAO.get(key);
+            if (value != null) params.put(key, value);
+        }
+        return KeyDerivation.fromMeta(metaDAO.get(KeyDerivation.META_KDF_ID), params);
+    }
 
-        sessionKey = newKey;
-        Arrays.fill(newPassword, '\0');
+    /** The KDF for a newly stored salt, chosen by {@code security.kdf} (pbkdf2 | argon2id). */
+    private static KeyDerivation newKeyDerivation() {
+        if ("argon2id".equalsIgnoreCase(ConfigLoader.get("security.kdf", "pbkdf2"))) {
+            return new Argon2idKeyDerivation(
+                    ConfigLoader.getInt("security.argon2.iterations", 3),
+                    ConfigLoader.getInt("security.argon2.memoryKib", 64 * 1024),
+                    ConfigLoader.getInt("security.argon2.parallelism", Runtime.getRuntime().availableProcessors()));
+        }
+        return new Pbkdf2KeyDerivation(calibratedIterations());
+    }
+
+    private static void putKdfMeta(Map<String, Object> meta, KeyDerivation kdf) {
+        meta.put(KeyDerivation.META_KDF_ID, kdf.id());
+        meta.putAll(kdf.parameters());
+    }
+
+    /**
+     * PBKDF2 iteration count tuned to {@code security.kdfTargetMillis} on this machine,
+     * never below {@code security.kdfMinIterations}. Used whenever a new KDF salt is stored.
+     */
+    static int calibratedIterations() {
+        return KdfCalibrator.calibrate(
+                ConfigLoader.getInt("security.kdfTargetMillis", 500),
+                ConfigLoader.getInt("security.kdfMinIterations", KdfCalibrator.MIN_ITERATIONS));
+    }
+
+    private int currentKeyVersion() throws Exception {
+        String v = metaDAO.get(KEY_DEK_VERSION);
+        return v != null ? Integer.parseInt(v) : 1;
+    }
+
+    private static String wrappedKeyName(int version) {
+        return version == 1 ? KEY_DEK_WRAPPED : KEY_DEK_WRAPPED + "_v" + version;
+    }
+
+    /**
+     * One-time upgrade of a legacy vault, where the password-derived key encrypted the data
+     * directly. That key becomes the vault data key and is wrapped under a freshly salted
+     * key-encryption key, so no rows need to be rewritten.
+     */
+    private void migrateToEnvelope(char[] password, SecretKey legacyKey, KeyDerivation kdf) throws Exception {
+        byte[] newSalt = CryptoUtil.generateSalt();
+        SecretKey kek  = kdf.derive(password, newSalt);
+
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put(KEY_SALT,        newSalt);
+        meta.put(KEY_DEK_WRAPPED, CryptoUtil.wrapKey(legacyKey, kek));
+        metaDAO.setAll(meta);
     }
 }
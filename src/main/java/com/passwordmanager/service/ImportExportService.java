@@ -1,9 +1,13 @@
 package com.passwordmanager.service;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.node.*;
 import com.opencsv.CSVReader;
 import com.passwordmanager.crypto.CryptoUtil;
+import com.passwordmanager.crypto.DerivedKeyCache;
+import com.passwordmanager.db.Workload;
 import com.passwordmanager.model.*;
 
 import javax.crypto.SecretKey;
@@ -19,51 +23,76 @@ import java.util.*;
  */
 public class ImportExportService {
 
-    private final VaultService vaultService;
-    private final ObjectMapper mapper = new ObjectMapper();
+    /** Fixed PBKDF2 cost of version-1 export files, which did not record it. */
+    private static final int LEGACY_EXPORT_ITERATIONS = 200_000;
 
-    public ImportExportService(VaultService vaultService) {
+    private final VaultService    vaultService;
+    private final DerivedKeyCache keyCache;
+    private final ObjectMapper    mapper = new ObjectMapper();
+
+    public ImportExportService(VaultService vaultService, DerivedKeyCache keyCache) {
         this.vaultService = vaultService;
+        this.keyCache     = keyCache;
     }
 
     // ── Export ────────────────────────────────────────────────────────────────
 
     /**
      * Exports all entries to an AES-256-GCM encrypted JSON file.
-     * The file is self-contained: it embeds a fresh salt so it can be decrypted
-     * with only the master password (without knowing the vault key).
+     * The file is self-contained: it embeds its salt so it can be decrypted
+     * with only the master password (without knowing the vault key). Exports in one
+     * session share a salt, so the derived key comes from the session cache after the first.
+     *
+     * Entries are written through a {@link JsonGenerator} straight into the cipher as they
+     * are streamed from the vault, and the ciphertext is staged in a temporary file next to
+     * {@code destination} before being Base64-encoded into the wrapper – neither the JSON
+     * nor the ciphertext is ever held in memory as a whole.
      */
     public void exportEncrypted(Path destination, SecretKey vaultKey, char[] masterPassword)
             throws Exception {
-        // Collect all entries
-        List<EntryListItem> items = vaultService.listAll();
-        ArrayNode entriesNode = mapper.createArrayNode();
-        for (EntryListItem item : items) {
-            EntryDto dto = vaultService.getEntry(item.getId(), vaultKey);
-            ObjectNode node = mapper.createObjectNode();
-            node.put("type",     dto.getType().name());
-            node.put("title",    dto.getTitle());
-            node.put("category", dto.getCategoryName() != null ? dto.getCategoryName() : "");
-            node.put("favorite", dto.isFavorite());
-            ObjectNode fieldsNode = mapper.createObjectNode();
-            dto.getFields().forEach(fieldsNode::put);
-            node.set("fields", fieldsNode);
-            node.put("tags",  String.join(",", dto.getTags()));
-            entriesNode.add(node);
+        DerivedKeyCache.SaltedKey exportKey =
+                keyCache.forExport(masterPassword, AuthService.calibratedIterations());
+
+        Path cipherFile = Files.createTempFile(destination.toAbsolutePath().getParent(), ".export-", ".tmp");
+        try {
+            // Stream all entries into the encrypted JSON array (fields decrypted in batches)
+            try (JsonGenerator json = mapper.getFactory().createGenerator(CryptoUtil.encryptingStream(
+                    new BufferedOutputStream(Files.newOutputStream(cipherFile)), exportKey.key()))) {
+                json.writeStartArray();
+                vaultService.forEachEntry(vaultKey, dto -> writeEntry(json, dto));
+                json.writeEndArray();
+            }
+
+            // Final file: JSON wrapper with salt + iteration count + ciphertext
+            try (JsonGenerator root = mapper.getFactory().createGenerator(destination.toFile(), JsonEncoding.UTF8);
+                 InputStream data = new BufferedInputStream(Files.newInputStream(cipherFile))) {
+                root.useDefaultPrettyPrinter();
+                root.writeStartObject();
+                root.writeNumberField("version",    2);
+                root.writeStringField("salt",       CryptoUtil.toHex(exportKey.salt()));
+                root.writeNumberField("iterations", exportKey.iterations());
+                root.writeFieldName("data");
+                root.writeBinary(data, -1);
+                root.writeEndObject();
+            }
+        } finally {
+            Files.deleteIfExists(cipherFile);
         }
+    }
 
-        // Encrypt the JSON with a key derived from the master password
-        byte[] plainJson  = mapper.writeValueAsBytes(entriesNode);
-        byte[] exportSalt = CryptoUtil.generateSalt();
-        SecretKey exportKey = CryptoUtil.deriveKey(masterPassword, exportSalt, 200_000);
-        byte[] encrypted  = CryptoUtil.encrypt(plainJson, exportKey);
-
-        // Final file: JSON wrapper with salt + ciphertext
-        ObjectNode root = mapper.createObjectNode();
-        root.put("version", 1);
-        root.put("salt",    CryptoUtil.toHex(exportSalt));
-        root.put("data",    Base64.getEncoder().encodeToString(encrypted));
-        mapper.writerWithDefaultPrettyPrinter().writeValue(destination.toFile(), root);
+    private static void writeEntry(JsonGenerator json, EntryDto dto) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("type",     dto.getType().name());
+        json.writeStringField("title",    dto.getTitle());
+        json.writeStringField("category", dto.getCategoryName() != null ? dto.getCategoryName() : "");
+        json.writeBooleanField("favorite", dto.isFavorite());
+        json.writeObjectFieldStart("fields");
+        for (Map.Entry<String, String> field : dto.getFields().entrySet()) {
+            json.writeStringField(field.getKey(), field.getValue());
+        }
+        json.writeEndObject();
+        json.writeStringField("tags",     String.join(",", dto.getTags()));
+        json.writeEndObject();
     }
 
     // ── Import: own format ────────────────────────────────────────────────────
@@ -73,7 +102,8 @@ public class ImportExportService {
         JsonNode root       = mapper.readTree(source.toFile());
         byte[]   salt       = CryptoUtil.fromHex(root.get("salt").asText());
         byte[]   encrypted  = Base64.getDecoder().decode(root.get("data").asText());
-        SecretKey exportKey = CryptoUtil.deriveKey(masterPassword, salt, 200_000);
+        int      iterations = root.path("iterations").asInt(LEGACY_EXPORT_ITERATIONS); // version 1 files
+        SecretKey exportKey = keyCache.derive(masterPassword, salt, iterations);
         byte[]   plainJson  = CryptoUtil.decrypt(encrypted, exportKey);
 
         ArrayNode entries = (ArrayNode) mapper.readTree(plainJson);
@@ -109,7 +139,7 @@ public class ImportExportService {
             } else {
                 continue; // skip card/identity import from Bitwarden for now
             }
-            vaultService.createEntry(dto, vaultKey);
+            createImported(dto, vaultKey);
             count++;
         }
         return count;
@@ -135,7 +165,7 @@ public class ImportExportService {
                 dto.setField("password", safeGet(row, 2, ""));
                 dto.setField("url",      safeGet(row, 3, ""));
                 dto.setField("notes",    safeGet(row, 4, ""));
-                vaultService.createEntry(dto, vaultKey);
+                createImported(dto, vaultKey);
                 count++;
             }
         }
@@ -156,12 +186,17 @@ public class ImportExportService {
             if (!tags.isBlank()) dto.setTags(Arrays.asList(tags.split(",")));
             node.path("fields").fields().forEachRemaining(e ->
                     dto.setField(e.getKey(), e.getValue().asText()));
-            vaultService.createEntry(dto, vaultKey);
+            createImported(dto, vaultKey);
             count++;
         }
         return count;
     }
 
+    /** Imports run on the bulk pool so a large file can't starve the UI of connections. */
+    private void createImported(EntryDto dto, SecretKey vaultKey) throws Exception {
+        Workload.BULK.run(() -> vaultService.createEntry(dto, vaultKey));
+    }
+
     private String safeGet(String[] arr, int idx, String def) {
         return (idx < arr.length && arr[idx] != null) ? arr[idx].trim() : def;
     }
@@ -0,0 +1,108 @@
+package com.passwordmanager.service;
+
+import com.passwordmanager.config.ConfigLoader;
+import com.passwordmanager.crypto.KeyRing;
+import com.passwordmanager.dao.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Re-encrypts every versioned ciphertext row under the current data key, in the background.
+ *
+ * Work is done in fixed-size transactional batches with a pause between them so the UI
+ * stays responsive. The per-table cursor lives in vault_meta, so a rotation interrupted
+ * by a crash or by locking the vault resumes where it stopped on the next unlock.
+ *
+ * Usage:
+ *   rotation.start(password)     – begin a new rotation (Settings)
+ *   rotation.resumeIfPending()   – after unlock
+ *   rotation.stop()              – before locking
+ */
+public class KeyRotationService {
+
+    private static final String CURSOR_PREFIX = "key_rotation_cursor.";
+
+    private final AuthService    auth;
+    private final KeyRotationDAO rotationDAO = new KeyRotationDAO();
+    private final MetaDAO        metaDAO     = new MetaDAO();
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "key-rotation");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Future<?>         running;
+    private volatile boolean  stopRequested;
+    private volatile Exception lastError;
+
+    public KeyRotationService(AuthService auth) {
+        this.auth = auth;
+    }
+
+    /** Verifies the master password, creates the next key version and starts re-encrypting. */
+    public void start(char[] password) throws Exception {
+        auth.beginKeyRotation(password);
+        resumeIfPending();
+    }
+
+    /** Restarts an interrupted rotation. No-op if none is pending or one is already running. */
+    public synchronized void resumeIfPending() throws Exception {
+        if (!auth.isUnlocked() || !auth.isKeyRotationPending() || isRunning()) return;
+        stopRequested = false;
+        lastError     = null;
+        running       = worker.submit(this::runRotation);
+    }
+
+    /** Asks the job to stop after the current batch; progress is kept for the next resume. */
+    public synchronized void stop() {
+        stopRequested = true;
+    }
+
+    public synchronized boolean isRunning() {
+        return running != null && !running.isDone();
+    }
+
+    public Exception getLastError() { return lastError; }
+
+    // ── Worker ────────────────────────────────────────────────────────────────
+
+    private void runRotation() {
+        int  batchSize = ConfigLoader.getInt("security.keyRotation.batchSize", 200);
+        long pauseMs   = ConfigLoader.getInt("security.keyRotation.pauseMillis", 50);
+        try {
+            KeyRing ring = auth.getKeyRing();
+            for (KeyRotationDAO.Table table : KeyRotationDAO.Table.values()) {
+                String cursorKey = CURSOR_PREFIX + table.tableName();
+                String saved     = metaDAO.get(cursorKey);
+                long   cursor    = saved != null ? Long.parseLong(saved) : 0;
+
+                while (true) {
+                    if (shouldStop()) return;
+                    long last = rotationDAO.rotateBatch(table, cursor, batchSize, ring, cursorKey);
+                    if (last < 0) {
+                        // Rows rewritten behind the cursor by an older session: sweep once more from the start
+                        if (cursor == 0 || rotationDAO.countStale(table, ring.currentVersion()) == 0) break;
+                        cursor = 0;
+                        continue;
+                    }
+                    cursor = last;
+                    Thread.sleep(pauseMs);
+                }
+            }
+
+            for (KeyRotationDAO.Table table : KeyRotationDAO.Table.values()) {
+                metaDAO.delete(CURSOR_PREFIX + table.tableName());
+            }
+            auth.completeKeyRotation();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            lastError = e;
+        }
+    }
+
+    private boolean shouldStop() {
+        return stopRequested || !auth.isUnlocked();
+    }
+}
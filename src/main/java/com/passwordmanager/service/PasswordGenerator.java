@@ -44,8 +44,8 @@ public class PasswordGenerator {
     }
 
     /** Scores password strength: 0 (very weak) → 4 (very strong). */
-    public int strength(String password) {
-        if (password == null || password.isEmpty()) return 0;
+    public int strength(CharSequence password) {
+        if (password == null || password.length() == 0) return 0;
         int score = 0;
         if (password.length() >= 8)  score++;
         if (password.length() >= 14) score++;
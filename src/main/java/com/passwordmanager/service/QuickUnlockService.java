@@ -0,0 +1,196 @@
+package com.passwordmanager.service;
+
+import com.passwordmanager.config.ConfigLoader;
+import com.passwordmanager.crypto.CryptoUtil;
+import com.passwordmanager.crypto.KeyRing;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.*;
+
+/**
+ * Optional PIN re-entry after the vault locks, without the full master password + TOTP round.
+ *
+ * While unlocked, a PIN set in Settings is stretched with PBKDF2 into a PIN key, at a
+ * tenth of the master password's calibrated cost so re-entry stays quick.
+ * On lock, the session's data keys are wrapped under that key and kept in memory only;
+ * the PIN key itself is discarded. Entering the PIN within the configured window unwraps
+ * them again. A wrong PIN counts against a small attempt budget; exhausting it, or the
+ * window expiring, wipes the wrapped keys so only the full two-step unlock works.
+ * Nothing is persisted, so a cold start always needs the full flow.
+ *
+ * A full unlock revokes quick unlock; {@link #needsNewPin()} then tells the UI to ask
+ * for the PIN again instead of leaving it silently off.
+ *
+ * Security: while locked, the wrapped data keys sit on the heap protected only by the
+ * PIN. The attempt limit only guards this UI – anyone who can read the process memory
+ * (a heap dump, swap, a crash dump) can run the PIN guesses offline at full speed, and a
+ * short numeric PIN falls in seconds whatever the iteration count. The 6-character
+ * minimum, the attempt limit and the short window are the real defence; users should
+ * still prefer a longer alphanumeric PIN, and leave quick unlock off on machines they
+ * don't control.
+ *
+ * Usage:
+ *   quick.enable(pin)     – Settings, while unlocked
+ *   quick.seal()          – just before auth.lock()
+ *   quick.unlock(pin)     – unlock screen
+ *   quick.revoke()        – after a full unlock
+ */
+public class QuickUnlockService {
+
+    static final int MIN_PIN_LENGTH = 6;
+    /** The PIN key costs this fraction of a master-password derivation. */
+    static final int KDF_COST_DIVISOR = 10;
+
+    private final AuthService auth;
+
+    // ── Armed while unlocked ──────────────────────────────────────────────────
+    private byte[] pinSalt;
+    private int    pinIterations;
+    private byte[] pinKey;            // dropped once sealed
+    private boolean pinSet;           // a PIN was set this session and not turned off in Settings
+
+    // ── Sealed while locked ───────────────────────────────────────────────────
+    private Map<Integer, byte[]> sealedKeys;   // key version → data key wrapped under the PIN key
+    private long sealedUntil;
+    private int  failedAttempts;
+
+    public QuickUnlockService(AuthService auth) {
+        this.auth = auth;
+    }
+
+    /** Sets (or replaces) the quick-unlock PIN for this session. */
+    public synchronized void enable(char[] pin) throws GeneralSecurityException {
+        try {
+            if (!auth.isUnlocked()) throw new IllegalStateException("Vault is locked");
+            if (pin.length < MIN_PIN_LENGTH) {
+                throw new IllegalArgumentException("PIN must be at least " + MIN_PIN_LENGTH + " characters");
+            }
+            wipe();
+            pinSalt       = CryptoUtil.generateSalt();
+            pinIterations = kdfIterations();
+            pinKey        = derivePinKey(pin, pinSalt, pinIterations).getEncoded();
+            pinSet        = true;
+        } finally {
+            Arrays.fill(pin, '\0');
+        }
+    }
+
+    /** Turns quick unlock off at the user's request. */
+    public synchronized void disable() {
+        wipe();
+        pinSet = false;
+    }
+
+    /**
+     * Drops the PIN-sealed session once the full unlock has succeeded. Unlike
+     * {@link #disable()} this remembers that a PIN was set, see {@link #needsNewPin()}.
+     */
+    public synchronized void revoke() { wipe(); }
+
+    public synchronized boolean isEnabled() { return pinKey != null || isAvailable(); }
+
+    /**
+     * True when a PIN was set this session but quick unlock has since been turned off
+     * by a full unlock, too many wrong PINs or the window expiring – the PIN must be
+     * entered again in Settings to re-arm it.
+     */
+    public synchronized boolean needsNewPin() { return pinSet && !isEnabled(); }
+
+    /**
+     * Wraps the session keys under the PIN key. Call before {@link AuthService#lock()};
+     * no-op when quick unlock is not enabled.
+     */
+    public synchronized void seal() {
+        if (pinKey == null || !auth.isUnlocked()) return;
+        SecretKey kek = new SecretKeySpec(pinKey, "AES");
+        try {
+            KeyRing ring = auth.getKeyRing();
+            Map<Integer, byte[]> wrapped = new TreeMap<>();
+            for (int v : ring.versions()) wrapped.put(v, CryptoUtil.wrapKey(ring.forVersion(v), kek));
+            sealedKeys     = wrapped;
+            sealedUntil    = System.currentTimeMillis() + windowSeconds() * 1000L;
+            failedAttempts = 0;
+        } catch (GeneralSecurityException e) {
+            sealedKeys = null;   // fall back to the full unlock flow
+        } finally {
+            Arrays.fill(pinKey, (byte) 0);
+            pinKey = null;
+        }
+    }
+
+    /** True while sealed keys exist and the window has not expired. */
+    public synchronized boolean isAvailable() {
+        if (sealedKeys == null) return false;
+        if (System.currentTimeMillis() > sealedUntil) {
+            wipe();
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized int remainingAttempts() {
+        return isAvailable() ? maxAttempts() - failedAttempts : 0;
+    }
+
+    /**
+     * Restores the session if the PIN is correct.
+     *
+     * @return true if the vault is unlocked; false on a wrong PIN or when quick unlock
+     *         is no longer available (expired or out of attempts)
+     */
+    public synchronized boolean unlock(char[] pin) throws GeneralSecurityException {
+        try {
+            if (!isAvailable()) return false;
+            SecretKey candidate = derivePinKey(pin, pinSalt, pinIterations);
+            KeyRing ring = null;
+            try {
+                for (Map.Entry<Integer, byte[]> e : sealedKeys.entrySet()) {
+                    SecretKey dek = CryptoUtil.unwrapKey(e.getValue(), candidate);   // tag checks the PIN
+                    if (ring == null) ring = new KeyRing(e.getKey(), dek); else ring.put(e.getKey(), dek);
+                }
+            } catch (GeneralSecurityException wrongPin) {
+                if (++failedAttempts >= maxAttempts()) wipe();
+                return false;
+            }
+
+            auth.resumeSession(ring);
+            // Stay armed for the next lock with the same PIN
+            byte[] armed = candidate.getEncoded();
+            wipe();
+            pinKey = armed;
+            return true;
+        } finally {
+            Arrays.fill(pin, '\0');
+        }
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private void wipe() {
+        if (pinKey != null) Arrays.fill(pinKey, (byte) 0);
+        if (sealedKeys != null) sealedKeys.values().forEach(b -> Arrays.fill(b, (byte) 0));
+        pinKey         = null;
+        sealedKeys     = null;
+        failedAttempts = 0;
+    }
+
+    private static SecretKey derivePinKey(char[] pin, byte[] salt, int iterations) throws GeneralSecurityException {
+        return CryptoUtil.deriveKey(pin, salt, iterations);
+    }
+
+    /** Configured PBKDF2 cost, or a fraction of the calibrated master-password cost. */
+    private static int kdfIterations() {
+        int configured = ConfigLoader.getInt("security.quickUnlock.kdfIterations", 0);
+        return configured > 0 ? configured : Math.max(1, AuthService.calibratedIterations() / KDF_COST_DIVISOR);
+    }
+
+    private static int windowSeconds() {
+        return ConfigLoader.getInt("security.quickUnlock.windowSeconds", 900);
+    }
+
+    private static int maxAttempts() {
+        return Math.max(1, ConfigLoader.getInt("security.quickUnlock.maxAttempts", 3));
+    }
+}
@@ -1,6 +1,8 @@
 package com.passwordmanager.service;
 
+import com.passwordmanager.crypto.SecretArena;
 import com.passwordmanager.dao.*;
+import com.passwordmanager.db.UnitOfWork;
 import com.passwordmanager.model.*;
 
 import javax.crypto.SecretKey;
@@ -9,49 +11,106 @@ import java.util.*;
 /**
  * Business logic for all vault CRUD operations.
  * Encrypts/decrypts field values using the session key from AuthService.
+ *
+ * Each write runs as one {@link UnitOfWork}: the entry row, its fields, tags, category
+ * and history share one connection and commit together.
  */
 public class VaultService {
 
-    private final EntryDAO    entryDAO    = new EntryDAO();
-    private final FieldDAO    fieldDAO    = new FieldDAO();
-    private final HistoryDAO  historyDAO  = new HistoryDAO();
-    private final CategoryDAO categoryDAO = new CategoryDAO();
-    private final TagDAO      tagDAO      = new TagDAO();
+    private final EntryDAO       entryDAO;
+    private final FieldDAO       fieldDAO;
+    private final HistoryDAO     historyDAO;
+    private final CategoryDAO    categoryDAO;
+    private final TagDAO         tagDAO;
+    private final EntryDetailDAO detailDAO;
+
+    public VaultService() {
+        this(new EntryDAO(), new FieldDAO(), new HistoryDAO(), new CategoryDAO(), new TagDAO(), new EntryDetailDAO());
+    }
+
+    /** Uses the given DAOs instead of the database-backed defaults (tests). */
+    VaultService(EntryDAO entryDAO, FieldDAO fieldDAO, HistoryDAO historyDAO,
+                 CategoryDAO categoryDAO, TagDAO tagDAO, EntryDetailDAO detailDAO) {
+        this.entryDAO    = entryDAO;
+        this.fieldDAO    = fieldDAO;
+        this.historyDAO  = historyDAO;
+        this.categoryDAO = categoryDAO;
+        this.tagDAO      = tagDAO;
+        this.detailDAO   = detailDAO;
+    }
 
     // ── Create ────────────────────────────────────────────────────────────────
 
     public long createEntry(EntryDto dto, SecretKey key) throws Exception {
-        Long catId = resolveCategory(dto.getCategoryName());
-        long now   = System.currentTimeMillis();
-
-        long entryId = entryDAO.insert(dto.getType(), dto.getTitle(), catId, dto.isFavorite(), now);
-        fieldDAO.setFields(entryId, dto.getFields(), key);
-        tagDAO.setTagsForEntry(entryId, dto.getTags());
-        return entryId;
+        return UnitOfWork.call(() -> {
+            Long catId = resolveCategory(dto.getCategoryName());
+            long now   = System.currentTimeMillis();
+
+            long entryId = entryDAO.insert(dto.getType(), dto.getTitle(), catId, dto.isFavorite(), now);
+            fieldDAO.setFields(entryId, dto.getFields(), key);
+            tagDAO.setTagsForEntry(entryId, dto.getTags());
+            return entryId;
+        });
     }
 
     // ── Read ──────────────────────────────────────────────────────────────────
 
+    /** Entry, fields, tags and category in one database round trip. */
     public EntryDto getEntry(long entryId, SecretKey key) throws Exception {
-        Entry entry = entryDAO.findById(entryId);
-        if (entry == null) return null;
-        return toDto(entry, key);
+        return detailDAO.findById(entryId, key);
     }
 
-    public List<EntryListItem> listAll() throws Exception {
-        return entryDAO.findAll();
+    @FunctionalInterface
+    public interface EntryHandler {
+        void accept(EntryDto entry) throws Exception;
     }
 
-    public List<EntryListItem> search(String query) throws Exception {
-        return entryDAO.searchByTitle(query);
+    /**
+     * Streams every entry with decrypted fields and tags to {@code handler}, for
+     * full-vault operations (export). Entries are read through a cursor and decrypted in
+     * batches on the crypto worker pool, and tags are fetched per batch, so memory use
+     * does not grow with the vault.
+     */
+    public void forEachEntry(SecretKey key, EntryHandler handler) throws Exception {
+        fieldDAO.forEachByType(null, key, new FieldDAO.EntryFieldsHandler<>() {
+            private Map<Long, List<String>> tags = Map.of();
+
+            @Override
+            public void beforeBatch(List<EntryListItem> entries) throws Exception {
+                List<Long> ids = new ArrayList<>(entries.size());
+                for (EntryListItem item : entries) ids.add(item.getId());
+                tags = tagDAO.findNamesByEntries(ids);
+            }
+
+            @Override
+            public void accept(EntryListItem item, Map<String, String> fields) throws Exception {
+                EntryDto dto = new EntryDto();
+                dto.setId(item.getId());
+                dto.setType(item.getType());
+                dto.setTitle(item.getTitle());
+                dto.setCategoryName(item.getCategoryName());
+                dto.setFavorite(item.isFavorite());
+                dto.setUpdatedAt(item.getUpdatedAt());
+                dto.setFields(fields);
+                dto.setTags(tags.getOrDefault(item.getId(), new ArrayList<>()));
+                handler.accept(dto);
+            }
+        });
     }
 
-    public List<EntryListItem> listByCategory(int categoryId) throws Exception {
-        return entryDAO.findByCategory(categoryId);
+    /**
+     * A page of the entry list for {@code filter}: the rows after {@code last}, or
+     * when {@code last} is null the rows starting at {@code offset}.
+     */
+    public List<EntryListItem> listPage(EntryFilter filter, EntryListItem last, int offset, int limit)
+            throws Exception {
+        return last == null
+                ? entryDAO.findPage(filter, null, 0, offset, limit)
+                : entryDAO.findPage(filter, last.getTitle(), last.getId(), 0, limit);
     }
 
-    public List<EntryListItem> listFavorites() throws Exception {
-        return entryDAO.findFavorites();
+    public int countEntries(EntryFilter filter) throws Exception {
+        return entryDAO.count(filter);
     }
 
     public List<Category> listCategories() throws Exception {
@@ -64,30 +123,50 @@ public class VaultService {
 
     // ── Password history ──────────────────────────────────────────────────────
 
-    public List<PasswordHistory> getHistory(long entryId, SecretKey key) throws Exception {
-        return historyDAO.findByEntry(entryId, key);
+    /**
+     * Past passwords of an entry, decoded into {@code scope} rather than the session arena.
+     * Close the scope once the history is no longer shown; locking wipes it too.
+     */
+    public List<PasswordHistory> getHistory(long entryId, SecretKey key, SecretArena scope) throws Exception {
+        return historyDAO.findByEntry(entryId, key, scope);
     }
 
     // ── Update ────────────────────────────────────────────────────────────────
 
+    /**
+     * Saves an edited entry, provided nobody else has changed it since {@code dto} was loaded
+     * (its version still matches); otherwise nothing is written. The favourite flag is not
+     * saved here: set it with {@link #toggleFavorite}.
+     *
+     * @throws EntryConflictException on a concurrent change
+     */
     public void updateEntry(EntryDto dto, SecretKey key) throws Exception {
+        UnitOfWork.run(() -> update(dto, key));
+        dto.setVersion(dto.getVersion() + 1);
+    }
+
+    private void update(EntryDto dto, SecretKey key) throws Exception {
         Entry existing = entryDAO.findById(dto.getId());
         if (existing == null) throw new IllegalArgumentException("Entry not found: " + dto.getId());
 
+        // Claim the row first: a conflict aborts before any history or field is written
+        Long catId = resolveCategory(dto.getCategoryName());
+        long now   = System.currentTimeMillis();
+        entryDAO.update(dto.getId(), dto.getTitle(), catId, now, dto.getVersion());
+
+        // Decrypted once: for the history check and as the base the save is diffed against
+        FieldDAO.Stored old = fieldDAO.getStored(dto.getId(), key);
+
         // If it's a LOGIN entry and the password changed, push old password to history
         if (existing.getType() == EntryType.LOGIN) {
-            Map<String, String> oldFields = fieldDAO.getFields(dto.getId(), key);
-            String oldPw  = oldFields.getOrDefault("password", "");
+            String oldPw  = old.values().getOrDefault("password", "");
             String newPw  = dto.getFields().getOrDefault("password", "");
             if (!oldPw.isBlank() && !oldPw.equals(newPw)) {
                 historyDAO.save(dto.getId(), oldPw, key);
             }
         }
 
-        Long catId = resolveCategory(dto.getCategoryName());
-        long now   = System.currentTimeMillis();
-        entryDAO.update(dto.getId(), dto.getTitle(), catId, dto.isFavorite(), now);
-        fieldDAO.setFields(dto.getId(), dto.getFields(), key);
+        fieldDAO.setFields(dto.getId(), dto.getFields(), key, old);
         tagDAO.setTagsForEntry(dto.getId(), dto.getTags());
     }
 
@@ -107,22 +186,4 @@ public class VaultService {
         if (name == null || name.isBlank()) return null;
         return (long) categoryDAO.findOrCreate(name.trim()).getId();
     }
-
-    private EntryDto toDto(Entry entry, SecretKey key) throws Exception {
-        EntryDto dto = new EntryDto();
-        dto.setId(entry.getId());
-        dto.setType(entry.getType());
-        dto.setTitle(entry.getTitle());
-        dto.setFavorite(entry.isFavorite());
-        dto.setCreatedAt(entry.getCreatedAt());
-        dto.setUpdatedAt(entry.getUpdatedAt());
-        dto.setFields(fieldDAO.getFields(entry.getId(), key));
-        dto.setTags(tagDAO.findNamesByEntry(entry.getId()));
-
-        if (entry.getCategoryId() != null) {
-            Category cat = categoryDAO.findById(entry.getCategoryId().intValue());
-            if (cat != null) dto.setCategoryName(cat.getName());
-        }
-        return dto;
-    }
 }
@@ -0,0 +1,133 @@
+package com.passwordmanager.ui;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Read-only list backing a ListView over a large result set.
+ *
+ * {@link #size()} is the total row count, known up front, so the scroll bar is right
+ * from the start. Rows are fetched a page at a time on a background thread the first
+ * time the ListView asks for a row of that page; until it arrives {@link #get} returns
+ * null and the cell shows a placeholder. A page right after a loaded one continues from
+ * its last row (keyset); any other page – e.g. after dragging the scroll bar to the
+ * end – is fetched by offset, so the pages in between are never read.
+ *
+ * Only the {@link #MAX_PAGES} most recently used pages are kept; scrolling back to an
+ * evicted page loads it again. Must be used on the FX application thread.
+ *
+ * The list does not change after creation; to show new data, build a new one.
+ */
+public class PagedList<T> extends ObservableListBase<T> {
+
+    @FunctionalInterface
+    public interface PageSource<T> {
+        /**
+         * Up to {@code limit} rows following {@code last}, or when {@code last} is null
+         * the rows starting at {@code offset}.
+         */
+        List<T> page(T last, int offset, int limit) throws Exception;
+    }
+
+    /** Pages kept in memory; enough for several screens of scrolling either way. */
+    static final int MAX_PAGES = 8;
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "entry-pager");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final PageSource<T>       source;
+    private final int                 size;
+    private final int                 pageSize;
+    private final Consumer<Exception> onError;
+    private final Map<Integer, List<T>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Set<Integer> pending = new HashSet<>();
+    private final Set<Integer> failed  = new HashSet<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * @param onError told (on the FX thread) when a page fails to load; the rows of
+     *                that page stay placeholders until the list is rebuilt
+     */
+    public PagedList(PageSource<T> source, int size, int pageSize, Consumer<Exception> onError) {
+        this.source   = source;
+        this.size     = size;
+        this.pageSize = pageSize;
+        this.onError  = onError;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns row {@code index}, or null while its page is loading, if loading it
+     * failed, or if the data shrank since the count was taken.
+     */
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        int     page = index / pageSize;
+        List<T> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        int row = index - page * pageSize;
+        return row < rows.size() ? rows.get(row) : null;
+    }
+
+    private void requestPage(int page) {
+        if (failed.contains(page) || !pending.add(page)) return;
+
+        // Continue from the previous page when it is at hand; otherwise jump by offset
+        List<T> previous = pages.get(page - 1);
+        T       last     = previous != null && previous.size() == pageSize ? previous.get(pageSize - 1) : null;
+        int     offset   = page * pageSize;
+        int     ticket   = requests.incrementAndGet();
+        LOADER.execute(() -> {
+            // Dragging the scroll bar queues pages the user has long since passed: skip those
+            if (requests.get() - ticket >= MAX_PAGES) {
+                Platform.runLater(() -> pending.remove(page));
+                return;
+            }
+            try {
+                List<T> rows = source.page(last, offset, pageSize);
+                Platform.runLater(() -> pageLoaded(page, rows));
+            } catch (Exception e) {
+                Platform.runLater(() -> pageFailed(page, e));
+            }
+        });
+    }
+
+    private void pageLoaded(int page, List<T> rows) {
+        pending.remove(page);
+        pages.put(page, rows);
+        // Replace the placeholders so the ListView redraws those cells
+        int from = page * pageSize;
+        int to   = Math.min(size, from + pageSize);
+        beginChange();
+        for (int i = from; i < to; i++) nextSet(i, null);
+        endChange();
+    }
+
+    private void pageFailed(int page, Exception e) {
+        pending.remove(page);
+        failed.add(page);
+        onError.accept(e);
+    }
+}
@@ -1,5 +1,6 @@
 package com.passwordmanager.ui.controller;
 
+import com.passwordmanager.dao.EntryConflictException;
 import com.passwordmanager.model.*;
 import com.passwordmanager.service.*;
 import javafx.fxml.FXML;
@@ -60,6 +61,8 @@ public class AddEditEntryController {
     private final PasswordGenerator gen    = AppContext.getInstance().getPasswordGenerator();
 
     private Long   entryId;       // null = new entry
+    private int    version;       // of the loaded entry, checked on save
+    private boolean favorite;     // as loaded; the flag is only written if the user changes it
     private Runnable onSave;
 
     // ── Static opener ─────────────────────────────────────────────────────────
@@ -98,6 +101,8 @@ public class AddEditEntryController {
         try {
             EntryDto dto = vault.getEntry(entryId, auth.getSessionKey());
             if (dto == null) return;
+            version = dto.getVersion();
+            favorite = dto.isFavorite();
             typeCombo.setValue(dto.getType());
             typeCombo.setDisable(true);  // can't change type on existing entry
             titleField.setText(dto.getTitle());
@@ -159,9 +164,12 @@ public class AddEditEntryController {
                 vault.createEntry(dto, auth.getSessionKey());
             } else {
                 vault.updateEntry(dto, auth.getSessionKey());
+                if (dto.isFavorite() != favorite) vault.toggleFavorite(entryId, dto.isFavorite());
             }
             if (onSave != null) onSave.run();
             close();
+        } catch (EntryConflictException e) {
+            errorLabel.setText(e.getMessage());
         } catch (Exception e) {
             errorLabel.setText("Save failed: " + e.getMessage());
         }
@@ -175,6 +183,7 @@ public class AddEditEntryController {
     private EntryDto buildDto() {
         EntryDto dto = new EntryDto();
         if (entryId != null) dto.setId(entryId);
+        dto.setVersion(version);
         dto.setType(typeCombo.getValue());
         dto.setTitle(titleField.getText().trim());
         dto.setCategoryName(categoryField.getText().trim());
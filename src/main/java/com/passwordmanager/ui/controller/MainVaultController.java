@@ -1,11 +1,12 @@
 package com.passwordmanager.ui.controller;
 
 import com.passwordmanager.config.ConfigLoader;
+import com.passwordmanager.crypto.SecretArena;
 import com.passwordmanager.model.*;
 import com.passwordmanager.service.*;
+import com.passwordmanager.ui.PagedList;
 import com.passwordmanager.ui.SceneManager;
 import javafx.application.Platform;
-import javafx.collections.*;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
@@ -49,10 +50,16 @@ public class MainVaultController {
     private final AuthService      auth      = AppContext.getInstance().getAuthService();
     private final VaultService     vault     = AppContext.getInstance().getVaultService();
     private final ClipboardManager clipboard = AppContext.getInstance().getClipboardManager();
+    private final KeyRotationService rotation = AppContext.getInstance().getKeyRotationService();
+    private final QuickUnlockService quickUnlock = AppContext.getInstance().getQuickUnlockService();
 
     // ── State ─────────────────────────────────────────────────────────────────
-    private final ObservableList<EntryListItem> entries = FXCollections.observableArrayList();
+    /** Rows fetched per query as the entry list scrolls. */
+    private static final int PAGE_SIZE = 200;
+
+    private EntryFilter   currentFilter = EntryFilter.all();
     private EntryListItem selectedItem;
+    private SecretArena   historyScope;   // past passwords of the entry shown, wiped when it goes
     private ScheduledFuture<?> autoLockFuture;
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
         Thread t = new Thread(r, "auto-lock"); t.setDaemon(true); return t;
@@ -71,6 +78,10 @@ public class MainVaultController {
         loadEntries(null);
         scheduleAutoLock();
         detailPanel.setVisible(false);
+        resumeKeyRotation();
+        if (quickUnlock.needsNewPin()) {
+            showStatus("Quick unlock is off after the full unlock. Set your PIN again in Settings to turn it back on.");
+        }
     }
 
     // ── Toolbar actions ───────────────────────────────────────────────────────
@@ -89,6 +100,9 @@ public class MainVaultController {
 
     @FXML private void handleLock() {
         clipboard.clearNow();
+        closeHistory();
+        rotation.stop();
+        quickUnlock.seal();   // no-op unless a quick-unlock PIN was set
         auth.lock();
         SceneManager.showUnlockStep1();
     }
@@ -96,18 +110,23 @@ public class MainVaultController {
     // ── Entry list ────────────────────────────────────────────────────────────
 
     private void setupEntryList() {
-        entryList.setItems(entries);
         entryList.setCellFactory(lv -> new EntryCell());
         entryList.getSelectionModel().selectedItemProperty().addListener(
                 (obs, old, item) -> showDetail(item));
     }
 
     private void loadEntries(String filter) {
+        showEntries(filter == null || filter.isBlank() ? EntryFilter.all() : EntryFilter.search(filter));
+    }
+
+    /** Counts the matching entries and hands the list a pager; rows load as the user scrolls. */
+    private void showEntries(EntryFilter filter) {
         try {
-            List<EntryListItem> list = (filter == null || filter.isBlank())
-                    ? vault.listAll()
-                    : vault.search(filter);
-            entries.setAll(list);
+            int total = vault.countEntries(filter);
+            currentFilter = filter;
+            entryList.setItems(new PagedList<>(
+                    (last, offset, limit) -> vault.listPage(filter, last, offset, limit),
+                    total, PAGE_SIZE, e -> showStatus("Error loading entries: " + e.getMessage())));
         } catch (Exception e) {
             showStatus("Error loading entries: " + e.getMessage());
         }
@@ -139,16 +158,16 @@ public class MainVaultController {
 
     private void handleSidebarSelection(String label) {
         try {
-            List<EntryListItem> list = switch (label) {
-                case "All Entries"  -> vault.listAll();
-                case "Favourites"   -> vault.listFavorites();
+            EntryFilter filter = switch (label) {
+                case "All Entries"  -> EntryFilter.all();
+                case "Favourites"   -> EntryFilter.favorites();
                 default -> {
                     var cat = vault.listCategories().stream()
                             .filter(c -> c.getName().equals(label)).findFirst();
-                    yield cat.isPresent() ? vault.listByCategory(cat.get().getId()) : vault.listAll();
+                    yield cat.isPresent() ? EntryFilter.category(cat.get().getId()) : EntryFilter.all();
                 }
             };
-            entries.setAll(list);
+            showEntries(filter);
         } catch (Exception e) {
             showStatus("Error: " + e.getMessage());
         }
@@ -163,7 +182,7 @@ public class MainVaultController {
     // ── Detail panel ──────────────────────────────────────────────────────────
 
     private void showDetail(EntryListItem item) {
-        if (item == null) { detailPanel.setVisible(false); return; }
+        if (item == null) { hideDetail(); return; }
         selectedItem = item;
         try {
             EntryDto dto = vault.getEntry(item.getId(), auth.getSessionKey());
@@ -222,10 +241,11 @@ public class MainVaultController {
     }
 
     private void buildHistory(EntryDto dto) {
-        historyBox.getChildren().clear();
+        closeHistory();
         if (dto.getType() != EntryType.LOGIN) return;
         try {
-            var history = vault.getHistory(dto.getId(), auth.getSessionKey());
+            historyScope = auth.getSecretArena().openScope();
+            var history  = vault.getHistory(dto.getId(), auth.getSessionKey(), historyScope);
             if (history.isEmpty()) return;
             Label hdr = new Label("Password History");
             hdr.getStyleClass().add("section-header");
@@ -238,6 +258,20 @@ public class MainVaultController {
         } catch (Exception ignored) {}
     }
 
+    /** Clears the history list and wipes the passwords decoded for it. */
+    private void closeHistory() {
+        historyBox.getChildren().clear();
+        if (historyScope != null) {
+            historyScope.close();
+            historyScope = null;
+        }
+    }
+
+    private void hideDetail() {
+        detailPanel.setVisible(false);
+        closeHistory();
+    }
+
     // ── Entry actions (called from list cells via context menu) ───────────────
 
     @FXML private void handleEditSelected() {
@@ -256,7 +290,7 @@ public class MainVaultController {
                 try {
                     vault.deleteEntry(selectedItem.getId());
                     handleRefresh();
-                    detailPanel.setVisible(false);
+                    hideDetail();
                 } catch (Exception e) {
                     showStatus("Delete failed: " + e.getMessage());
                 }
@@ -265,7 +299,7 @@ public class MainVaultController {
     }
 
     void handleRefresh() {
-        loadEntries(searchField.getText());
+        showEntries(currentFilter);
         setupSidebar();
     }
 
@@ -288,6 +322,18 @@ public class MainVaultController {
                 Platform.runLater(this::handleLock), seconds, TimeUnit.SECONDS);
     }
 
+    // ── Key rotation ──────────────────────────────────────────────────────────
+
+    /** Picks up a data key rotation that was interrupted by a crash or lock. */
+    private void resumeKeyRotation() {
+        try {
+            rotation.resumeIfPending();
+            if (rotation.isRunning()) showStatus("Re-encrypting vault in the background…");
+        } catch (Exception e) {
+            showStatus("Key rotation could not resume: " + e.getMessage());
+        }
+    }
+
     // ── Helpers ───────────────────────────────────────────────────────────────
 
     private void showStatus(String msg) {
@@ -335,10 +381,18 @@ public class MainVaultController {
         @Override
         protected void updateItem(EntryListItem item, boolean empty) {
             super.updateItem(item, empty);
-            if (empty || item == null) {
+            if (empty) {
+                setText(null);
+                setGraphic(null);
+                return;
+            }
+            if (item == null) {
+                // Row of a page that is still loading
+                setText("Loading…");
                 setGraphic(null);
                 return;
             }
+            setText(null);
             HBox row = new HBox(8);
             row.getStyleClass().add("entry-cell");
 
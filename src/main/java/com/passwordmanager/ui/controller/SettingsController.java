@@ -8,6 +8,7 @@ import javafx.stage.FileChooser;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 
 public class SettingsController {
@@ -17,6 +18,10 @@ public class SettingsController {
     @FXML private PasswordField newPasswordField;
     @FXML private PasswordField confirmPasswordField;
     @FXML private Label         changePasswordStatus;
+    @FXML private PasswordField rotateKeyPasswordField;
+    @FXML private Label         rotateKeyStatus;
+    @FXML private PasswordField quickPinField;
+    @FXML private Label         quickUnlockStatus;
 
     // Advanced tab
     @FXML private Label importStatus;
@@ -25,6 +30,17 @@ public class SettingsController {
     private final AuthService         auth    = AppContext.getInstance().getAuthService();
     private final ImportExportService impExp  = AppContext.getInstance().getImportExportService();
     private final VaultService        vault   = AppContext.getInstance().getVaultService();
+    private final KeyRotationService  rotation = AppContext.getInstance().getKeyRotationService();
+    private final QuickUnlockService  quickUnlock = AppContext.getInstance().getQuickUnlockService();
+
+    @FXML
+    public void initialize() {
+        if (quickUnlock.isEnabled()) {
+            quickUnlockStatus.setText("Quick unlock is on.");
+        } else if (quickUnlock.needsNewPin()) {
+            quickUnlockStatus.setText("Quick unlock was turned off. Set your PIN again to turn it back on.");
+        }
+    }
 
     // ── Security tab ──────────────────────────────────────────────────────────
 
@@ -52,6 +68,43 @@ public class SettingsController {
         }
     }
 
+    @FXML
+    private void handleRotateVaultKey() {
+        rotateKeyStatus.setText("");
+        String pw = rotateKeyPasswordField.getText();
+        if (pw.isBlank()) { rotateKeyStatus.setText("Enter your master password."); return; }
+        try {
+            rotation.start(pw.toCharArray());
+            rotateKeyPasswordField.clear();
+            rotateKeyStatus.setText("New vault key active. Existing data is being re-encrypted in the background.");
+        } catch (SecurityException e) {
+            rotateKeyStatus.setText("Incorrect master password.");
+        } catch (Exception e) {
+            rotateKeyStatus.setText("Error: " + e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleEnableQuickUnlock() {
+        quickUnlockStatus.setText("");
+        try {
+            quickUnlock.enable(quickPinField.getText().toCharArray());
+            quickPinField.clear();
+            quickUnlockStatus.setText("Quick unlock is on.");
+        } catch (IllegalArgumentException e) {
+            quickUnlockStatus.setText(e.getMessage() + ".");
+        } catch (Exception e) {
+            quickUnlockStatus.setText("Error: " + e.getMessage());
+        }
+    }
+
+    @FXML
+    private void handleDisableQuickUnlock() {
+        quickUnlock.disable();
+        quickPinField.clear();
+        quickUnlockStatus.setText("Quick unlock is off.");
+    }
+
     @FXML
     private void handleRegenerateBackupCodes() {
         try {
@@ -111,11 +164,11 @@ public class SettingsController {
         FileChooser fc = new FileChooser();
         fc.setTitle("Import " + desc);
         fc.getExtensionFilters().add(new FileChooser.ExtensionFilter(desc, ext));
-        File src = fc.showOpenDialog(null);
-        if (src == null) return;
+        List<File> files = fc.showOpenMultipleDialog(null);
+        if (files == null || files.isEmpty()) return;
 
+        char[] pw = {};
         try {
-            char[] pw = {};
             if (ext.endsWith("pmjson")) {
                 TextInputDialog d = new TextInputDialog();
                 d.setTitle("Import Password");
@@ -124,10 +177,15 @@ public class SettingsController {
                 if (res.isEmpty()) return;
                 pw = res.get().toCharArray();
             }
-            int count = fn.run(src.toPath(), pw);
-            importStatus.setText("Imported " + count + " entries from " + src.getName());
+            // One password for the whole batch; the export key cache derives it once per salt
+            int count = 0;
+            for (File src : files) count += fn.run(src.toPath(), pw);
+            String from = files.size() == 1 ? files.get(0).getName() : files.size() + " files";
+            importStatus.setText("Imported " + count + " entries from " + from);
         } catch (Exception e) {
             importStatus.setText("Import failed: " + e.getMessage());
+        } finally {
+            Arrays.fill(pw, '\0');
         }
     }
 
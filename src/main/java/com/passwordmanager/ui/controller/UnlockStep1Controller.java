@@ -4,6 +4,7 @@ import com.passwordmanager.service.*;
 import com.passwordmanager.ui.SceneManager;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.scene.layout.VBox;
 
 public class UnlockStep1Controller {
 
@@ -11,7 +12,39 @@ public class UnlockStep1Controller {
     @FXML private Label         errorLabel;
     @FXML private Button        unlockButton;
 
-    private final AuthService auth = AppContext.getInstance().getAuthService();
+    // Quick unlock (shown only while a PIN-sealed session is available)
+    @FXML private VBox          pinPane;
+    @FXML private PasswordField pinField;
+    @FXML private Label         pinError;
+
+    private final AuthService        auth        = AppContext.getInstance().getAuthService();
+    private final QuickUnlockService quickUnlock = AppContext.getInstance().getQuickUnlockService();
+
+    @FXML
+    public void initialize() {
+        showPinPane(quickUnlock.isAvailable());
+    }
+
+    @FXML
+    private void handlePinUnlock() {
+        pinError.setText("");
+        String pin = pinField.getText();
+        if (pin.isBlank()) { pinError.setText("Enter your PIN."); return; }
+        try {
+            boolean ok = quickUnlock.unlock(pin.toCharArray());
+            pinField.clear();
+            if (ok) {
+                SceneManager.showMainVault();
+            } else if (quickUnlock.isAvailable()) {
+                pinError.setText("Incorrect PIN. " + quickUnlock.remainingAttempts() + " attempt(s) left.");
+            } else {
+                showPinPane(false);
+                errorLabel.setText("Quick unlock is no longer available. Enter your master password.");
+            }
+        } catch (Exception e) {
+            pinError.setText("Error: " + e.getMessage());
+        }
+    }
 
     @FXML
     private void handleUnlock() {
@@ -29,6 +62,7 @@ public class UnlockStep1Controller {
             boolean ok = auth.verifyMasterPassword(pw.toCharArray());
             masterPasswordField.clear();
             if (ok) {
+                quickUnlock.revoke();   // full unlock supersedes any PIN-sealed session
                 SceneManager.showUnlockStep2();
             } else {
                 errorLabel.setText("Incorrect master password.");
@@ -39,4 +73,9 @@ public class UnlockStep1Controller {
             unlockButton.setDisable(false);
         }
     }
+
+    private void showPinPane(boolean show) {
+        pinPane.setVisible(show);
+        pinPane.setManaged(show);
+    }
 }
@@ -0,0 +1,148 @@
+package com.passwordmanager.crypto;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The {@code suite || nonce || ciphertext+tag} blob layout, and the fallback to legacy
+ * header-less {@code IV || ciphertext+tag} AES-GCM blobs written before cipher suites.
+ */
+class CryptoUtilTest {
+
+    private static final byte[] PLAIN = "correct horse battery staple".getBytes(StandardCharsets.UTF_8);
+
+    private final SecretKey key = CryptoUtil.generateDataKey();
+
+    @AfterEach
+    void restoreDefaultSuite() {
+        CipherSuite.configure("aes-gcm");
+    }
+
+    @Test
+    void blobStartsWithTheSuiteForWrites() throws Exception {
+        for (CipherSuite suite : CipherSuite.values()) {
+            CipherSuite.configure(suite == CipherSuite.AES_GCM ? "aes-gcm" : "chacha20-poly1305");
+            byte[] blob = CryptoUtil.encrypt(PLAIN, key);
+
+            assertEquals(suite.id(), blob[0]);
+            assertEquals(CryptoUtil.encryptedLength(PLAIN.length), blob.length);
+            assertArrayEquals(PLAIN, CryptoUtil.decrypt(blob, key));
+        }
+    }
+
+    @Test
+    void blobsOfEitherSuiteDecryptWhateverSuiteWritesNow() throws Exception {
+        CipherSuite.configure("chacha20-poly1305");
+        byte[] chacha = CryptoUtil.encrypt(PLAIN, key);
+        CipherSuite.configure("aes-gcm");
+        byte[] aes = CryptoUtil.encrypt(PLAIN, key);
+
+        assertArrayEquals(PLAIN, CryptoUtil.decrypt(chacha, key));
+        CipherSuite.configure("chacha20-poly1305");
+        assertArrayEquals(PLAIN, CryptoUtil.decrypt(aes, key));
+    }
+
+    @Test
+    void unknownSuiteIdIsNull() {
+        assertSame(CipherSuite.AES_GCM, CipherSuite.byId((byte) 0x01));
+        assertSame(CipherSuite.CHACHA20_POLY1305, CipherSuite.byId((byte) 0x02));
+        assertNull(CipherSuite.byId((byte) 0x00));
+        assertNull(CipherSuite.byId((byte) 0x7F));
+    }
+
+    @Test
+    void legacyBlobWithoutHeaderDecrypts() throws Exception {
+        byte[] legacy = legacyBlob((byte) 0x55);
+
+        assertArrayEquals(PLAIN, CryptoUtil.decrypt(legacy, key));
+        assertEquals(new String(PLAIN, StandardCharsets.UTF_8), CryptoUtil.decryptString(legacy, key));
+    }
+
+    @Test
+    void legacyBlobWhoseIvLooksLikeAHeaderDecrypts() throws Exception {
+        // The first IV byte is a valid suite id: the header parse fails its tag check and falls back
+        for (CipherSuite suite : CipherSuite.values()) {
+            assertArrayEquals(PLAIN, CryptoUtil.decrypt(legacyBlob(suite.id()), key));
+        }
+    }
+
+    @Test
+    void bufferDecryptHandlesBothLayouts() throws Exception {
+        for (byte[] blob : new byte[][]{CryptoUtil.encrypt(PLAIN, key), legacyBlob(CipherSuite.AES_GCM.id())}) {
+            ByteBuffer src = ByteBuffer.wrap(blob);
+            ByteBuffer dst = ByteBuffer.allocate(maxPlainLength(blob));
+
+            assertEquals(PLAIN.length, CryptoUtil.decrypt(src, dst, key));
+            assertArrayEquals(PLAIN, Arrays.copyOf(dst.array(), dst.position()));
+            assertFalse(src.hasRemaining());
+        }
+    }
+
+    @Test
+    void bufferEncryptMatchesArrayLayout() throws Exception {
+        ByteBuffer dst = ByteBuffer.allocate(CryptoUtil.encryptedLength(PLAIN.length));
+
+        assertEquals(dst.capacity(), CryptoUtil.encrypt(ByteBuffer.wrap(PLAIN), dst, key));
+        assertEquals(CipherSuite.forWrites().id(), dst.get(0));
+        assertArrayEquals(PLAIN, CryptoUtil.decrypt(dst.array(), key));
+    }
+
+    @Test
+    void tamperedBlobFailsAndLeavesBuffersInPlace() throws Exception {
+        byte[] blob = CryptoUtil.encrypt(PLAIN, key);
+        blob[blob.length - 1] ^= 1;
+        assertThrows(AEADBadTagException.class, () -> CryptoUtil.decrypt(blob, key));
+
+        ByteBuffer src = ByteBuffer.wrap(blob);
+        ByteBuffer dst = ByteBuffer.allocate(maxPlainLength(blob));
+        assertThrows(AEADBadTagException.class, () -> CryptoUtil.decrypt(src, dst, key));
+        assertEquals(0, src.position());
+        assertEquals(0, dst.position());
+    }
+
+    @Test
+    void wrongKeyFails() throws Exception {
+        byte[] blob = CryptoUtil.encrypt(PLAIN, key);
+
+        assertThrows(AEADBadTagException.class, () -> CryptoUtil.decrypt(blob, CryptoUtil.generateDataKey()));
+    }
+
+    @Test
+    void tooShortBlobIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CryptoUtil.decrypt(new byte[CipherSuite.NONCE_LEN], key));
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    /** Room a buffer decrypt asks for: the blob might be a legacy one, one header byte longer. */
+    private static int maxPlainLength(byte[] blob) {
+        return blob.length - CipherSuite.NONCE_LEN - CipherSuite.TAG_BITS / 8;
+    }
+
+    /** A blob in the pre-suite layout, with the given first IV byte. */
+    private byte[] legacyBlob(byte firstIvByte) throws Exception {
+        byte[] iv = new byte[CipherSuite.NONCE_LEN];
+        new SecureRandom().nextBytes(iv);
+        iv[0] = firstIvByte;
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(CipherSuite.TAG_BITS, iv));
+        byte[] ct = cipher.doFinal(PLAIN);
+
+        byte[] blob = new byte[iv.length + ct.length];
+        System.arraycopy(iv, 0, blob, 0, iv.length);
+        System.arraycopy(ct, 0, blob, iv.length, ct.length);
+        return blob;
+    }
+}
@@ -0,0 +1,74 @@
+package com.passwordmanager.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Key version lookup on a {@link KeyRing} and on plain keys. */
+class KeyRingTest {
+
+    private final SecretKey v1 = CryptoUtil.generateDataKey();
+    private final SecretKey v2 = CryptoUtil.generateDataKey();
+
+    @Test
+    void highestVersionIsCurrent() {
+        KeyRing ring = new KeyRing(1, v1);
+        assertEquals(1, ring.currentVersion());
+
+        ring.put(2, v2);
+        assertEquals(2, ring.currentVersion());
+        assertSame(v2, ring.current());
+        assertArrayEquals(v2.getEncoded(), ring.getEncoded());
+        assertEquals(List.of(1, 2), List.copyOf(ring.versions()));
+
+        ring.remove(1);
+        assertEquals(List.of(2), List.copyOf(ring.versions()));
+    }
+
+    @Test
+    void forVersionFindsEachLoadedKey() {
+        KeyRing ring = new KeyRing(1, v1);
+        ring.put(2, v2);
+
+        assertSame(v1, ring.forVersion(1));
+        assertSame(v2, ring.forVersion(2));
+        assertThrows(IllegalStateException.class, () -> ring.forVersion(3));
+    }
+
+    @Test
+    void resolveOnPlainKeyIgnoresVersion() {
+        assertSame(v1, KeyRing.resolve(v1, 1));
+        assertSame(v1, KeyRing.resolve(v1, 7));
+        assertEquals(1, KeyRing.versionOf(v1));
+        assertFalse(KeyRing.isRotating(v1));
+    }
+
+    @Test
+    void ringIsRotatingOnlyWhileItHoldsTwoVersions() {
+        KeyRing ring = new KeyRing(1, v1);
+        assertFalse(KeyRing.isRotating(ring));
+
+        ring.put(2, v2);
+        assertTrue(KeyRing.isRotating(ring));
+        assertEquals(2, KeyRing.versionOf(ring));
+
+        ring.remove(1);
+        assertFalse(KeyRing.isRotating(ring));
+    }
+
+    @Test
+    void blobsDecryptUnderTheKeyOfTheirVersion() throws Exception {
+        KeyRing ring  = new KeyRing(1, v1);
+        byte[]  older = CryptoUtil.encrypt("old".getBytes(StandardCharsets.UTF_8), ring);
+        ring.put(2, v2);
+        byte[]  newer = CryptoUtil.encrypt("new".getBytes(StandardCharsets.UTF_8), ring);
+
+        assertEquals("old", CryptoUtil.decryptString(older, KeyRing.resolve(ring, 1)));
+        assertEquals("new", CryptoUtil.decryptString(newer, KeyRing.resolve(ring, 2)));
+        assertEquals("new", CryptoUtil.decryptString(newer, v2));
+    }
+}
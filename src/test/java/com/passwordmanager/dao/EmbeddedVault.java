@@ -0,0 +1,34 @@
+package com.passwordmanager.dao;
+
+import com.passwordmanager.config.ConfigLoader;
+import com.passwordmanager.db.DatabaseManager;
+
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Opens a fresh embedded (H2, MySQL mode) vault database for DAO and service tests: the
+ * schema is migrated exactly as at startup, the dictionaries are loaded from it and
+ * nothing cached from a previous test's database survives.
+ */
+public final class EmbeddedVault {
+
+    private EmbeddedVault() {}
+
+    /** Opens a new database in {@code dir}; extra settings are added to the config. */
+    public static void open(Path dir, String... settings) throws Exception {
+        Properties props = new Properties();
+        props.setProperty("db.backend", "embedded");
+        props.setProperty("db.file", dir.resolve("vault").toString());
+        for (int i = 0; i + 1 < settings.length; i += 2) props.setProperty(settings[i], settings[i + 1]);
+        ConfigLoader.init(props);
+
+        MetaDAO.clearCache();
+        DatabaseManager.init();
+        Dictionaries.load();
+    }
+
+    public static void close() {
+        DatabaseManager.shutdown();
+    }
+}
@@ -0,0 +1,114 @@
+package com.passwordmanager.dao;
+
+import com.passwordmanager.model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Entry rows against an embedded vault: paging, filters and the optimistic version check. */
+class EntryDAOTest {
+
+    @TempDir
+    Path dir;
+
+    private final EntryDAO entries = new EntryDAO();
+
+    @BeforeEach
+    void openVault() throws Exception {
+        EmbeddedVault.open(dir);
+    }
+
+    @AfterEach
+    void closeVault() {
+        EmbeddedVault.close();
+    }
+
+    @Test
+    void insertAndFindById() throws Exception {
+        long id = entries.insert(EntryType.CARD, "Visa", null, true, 1000L);
+
+        Entry e = entries.findById(id);
+        assertEquals(EntryType.CARD, e.getType());
+        assertEquals("Visa", e.getTitle());
+        assertNull(e.getCategoryId());
+        assertTrue(e.isFavorite());
+        assertEquals(1000L, e.getCreatedAt());
+        assertNull(entries.findById(id + 1));
+    }
+
+    @Test
+    void keysetPagesFollowOnFromOffsetPages() throws Exception {
+        for (String title : List.of("e", "c", "a", "d", "b", "c")) {
+            entries.insert(EntryType.LOGIN, title, null, false, 1L);
+        }
+
+        List<EntryListItem> first = entries.findPage(EntryFilter.all(), null, 0, 0, 3);
+        assertEquals(List.of("a", "b", "c"), titles(first));
+
+        EntryListItem last = first.get(2);
+        List<EntryListItem> next = entries.findPage(EntryFilter.all(), last.getTitle(), last.getId(), 0, 3);
+        assertEquals(List.of("c", "d", "e"), titles(next));
+        assertNotEquals(last.getId(), next.get(0).getId());
+
+        // Jumping straight to the second page by offset gives the same rows
+        assertEquals(titles(next), titles(entries.findPage(EntryFilter.all(), null, 0, 3, 3)));
+    }
+
+    @Test
+    void countAndPageApplyTheFilter() throws Exception {
+        entries.insert(EntryType.LOGIN, "GitHub", null, true, 1L);
+        entries.insert(EntryType.LOGIN, "GitLab", null, false, 1L);
+        entries.insert(EntryType.NOTE, "Recovery codes", null, false, 1L);
+
+        assertEquals(3, entries.count(EntryFilter.all()));
+        assertEquals(2, entries.count(EntryFilter.search("Git")));
+        assertEquals(1, entries.count(EntryFilter.favorites()));
+        assertEquals(List.of("GitHub"), titles(entries.findPage(EntryFilter.favorites(), null, 0, 0, 10)));
+    }
+
+    @Test
+    void updateFailsOnStaleVersion() throws Exception {
+        long id = entries.insert(EntryType.LOGIN, "Old", null, false, 1L);
+
+        entries.update(id, "New", null, 2L, 0);
+        assertEquals("New", entries.findById(id).getTitle());
+
+        assertThrows(EntryConflictException.class, () -> entries.update(id, "Lost", null, 3L, 0));
+        assertEquals("New", entries.findById(id).getTitle());
+    }
+
+    @Test
+    void toggleFavoriteDoesNotConflictWithAnOpenEdit() throws Exception {
+        long id = entries.insert(EntryType.LOGIN, "Mail", null, false, 1L);
+
+        entries.toggleFavorite(id, true);
+        // An edit opened before the toggle still saves, and keeps the star
+        entries.update(id, "Webmail", null, 2L, 0);
+        Entry saved = entries.findById(id);
+        assertEquals("Webmail", saved.getTitle());
+        assertTrue(saved.isFavorite());
+    }
+
+    @Test
+    void deleteRemovesEntry() throws Exception {
+        long id = entries.insert(EntryType.LOGIN, "Gone", null, false, 1L);
+        entries.delete(id);
+
+        assertNull(entries.findById(id));
+        assertEquals(0, entries.count(EntryFilter.all()));
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static List<String> titles(List<EntryListItem> items) {
+        List<String> titles = new ArrayList<>();
+        for (EntryListItem item : items) titles.add(item.getTitle());
+        return titles;
+    }
+}
@@ -0,0 +1,224 @@
+package com.passwordmanager.dao;
+
+import com.passwordmanager.crypto.CryptoUtil;
+import com.passwordmanager.crypto.KeyRing;
+import com.passwordmanager.crypto.SecretArena;
+import com.passwordmanager.db.DatabaseManager;
+import com.passwordmanager.model.EntryListItem;
+import com.passwordmanager.model.EntryType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Encrypted fields against an embedded vault, in both the record and the per-field layout. */
+class FieldDAOTest {
+
+    @TempDir
+    Path dir;
+
+    private final EntryDAO  entries = new EntryDAO();
+    private final FieldDAO  fields  = new FieldDAO();
+    private final SecretKey key     = CryptoUtil.generateDataKey();
+
+    @AfterEach
+    void closeVault() {
+        EmbeddedVault.close();
+    }
+
+    @Test
+    void recordLayoutRoundTripDropsBlankValues() throws Exception {
+        EmbeddedVault.open(dir);
+        long id = login("Mail");
+
+        fields.setFields(id, ordered("username", "me", "password", "s3cret", "notes", " "), key);
+
+        assertEquals(ordered("username", "me", "password", "s3cret"), fields.getFields(id, key));
+        assertNull(fields.getRawField(id, "password"));
+        assertNotNull(storedRecord(id));
+    }
+
+    @Test
+    void saveWithPreviousFieldsDoesNotReadThemAgain() throws Exception {
+        EmbeddedVault.open(dir);
+        long id = login("Mail");
+        fields.setFields(id, ordered("password", "old"), key);
+        byte[] record = storedRecord(id);
+
+        FieldDAO.Stored previous = fields.getStored(id, key);
+        assertEquals("old", previous.values().get("password"));
+
+        // Unchanged: nothing is rewritten
+        fields.setFields(id, ordered("password", "old"), key, previous);
+        assertArrayEquals(record, storedRecord(id));
+
+        // A re-read would now fail its tag check
+        setStoredRecord(id, new byte[record.length]);
+        fields.setFields(id, ordered("password", "new"), key, previous);
+        assertEquals(ordered("password", "new"), fields.getFields(id, key));
+    }
+
+    @Test
+    void keysDifferingOnlyInCaseAreDistinct() throws Exception {
+        EmbeddedVault.open(dir);
+        long first  = login("Mail");
+        long second = login("Bank");
+
+        fields.setFields(first,  ordered("Password", "upper"), key);
+        fields.setFields(second, ordered("password", "lower"), key);
+        Dictionaries.load();   // resolve both names from the table, not from this run's cache
+
+        assertEquals(ordered("Password", "upper"), fields.getFields(first, key));
+        assertEquals(ordered("password", "lower"), fields.getFields(second, key));
+    }
+
+    @Test
+    void perFieldLayoutDeletesRemovedKeys() throws Exception {
+        EmbeddedVault.open(dir, "storage.fieldLayout", "per-field");
+        long id = login("Mail");
+
+        fields.setFields(id, ordered("username", "me", "password", "s3cret"), key);
+        assertNotNull(fields.getRawField(id, "password"));
+
+        fields.setFields(id, ordered("username", "me"), key);
+        assertEquals(ordered("username", "me"), fields.getFields(id, key));
+        assertNull(fields.getRawField(id, "password"));
+        assertNull(storedRecord(id));
+    }
+
+    @Test
+    void perFieldRowsMigrateToRecordOnNextSave() throws Exception {
+        EmbeddedVault.open(dir, "storage.fieldLayout", "per-field");
+        long id = login("Mail");
+        fields.setFields(id, ordered("password", "old"), key);
+        EmbeddedVault.close();
+
+        EmbeddedVault.open(dir);
+        assertEquals(ordered("password", "old"), fields.getFields(id, key));
+        fields.setFields(id, ordered("password", "new"), key);
+
+        assertEquals(ordered("password", "new"), fields.getFields(id, key));
+        assertNull(fields.getRawField(id, "password"));
+    }
+
+    @Test
+    void recordCopiedToAnotherEntryFailsToDecrypt() throws Exception {
+        EmbeddedVault.open(dir);
+        long a = login("A");
+        long b = login("B");
+        fields.setFields(a, ordered("password", "for A only"), key);
+
+        setStoredRecord(b, storedRecord(a));
+        assertThrows(AEADBadTagException.class, () -> fields.getFields(b, key));
+    }
+
+    @Test
+    void rowsOfBothKeyVersionsReadDuringRotation() throws Exception {
+        EmbeddedVault.open(dir);
+        long oldRow = login("Old");
+        fields.setFields(oldRow, ordered("password", "v1"), new KeyRing(1, key));
+
+        KeyRing ring = new KeyRing(1, key);
+        ring.put(2, CryptoUtil.generateDataKey());
+        long newRow = login("New");
+        fields.setFields(newRow, ordered("password", "v2"), ring);
+
+        assertEquals(ordered("password", "v1"), fields.getFields(oldRow, ring));
+        assertEquals(ordered("password", "v2"), fields.getFields(newRow, ring));
+        assertEquals(2, storedKeyVersion(newRow));
+        // A ring without the new version says so instead of trying the wrong key
+        assertThrows(IllegalStateException.class, () -> fields.getFields(newRow, new KeyRing(1, key)));
+    }
+
+    @Test
+    void scanStreamsEveryEntryInBatches() throws Exception {
+        EmbeddedVault.open(dir, "db.fetchSize", "2");
+        for (int i = 0; i < 5; i++) {
+            fields.setFields(login("Login " + i), ordered("password", "pw" + i), key);
+        }
+        fields.setFields(entries.insert(EntryType.NOTE, "Note", null, false, 1L), ordered("text", "hi"), key);
+
+        List<Integer> batches   = new ArrayList<>();
+        List<String>  passwords = new ArrayList<>();
+        fields.forEachByType(EntryType.LOGIN, key, new FieldDAO.EntryFieldsHandler<>() {
+            @Override
+            public void beforeBatch(List<EntryListItem> batch) {
+                batches.add(batch.size());
+            }
+
+            @Override
+            public void accept(EntryListItem entry, Map<String, String> values) {
+                passwords.add(values.get("password"));
+            }
+        });
+
+        assertEquals(List.of(2, 2, 1), batches);
+        assertEquals(List.of("pw0", "pw1", "pw2", "pw3", "pw4"), passwords);
+    }
+
+    @Test
+    void secretScanWipesEachBatchAfterHandler() throws Exception {
+        EmbeddedVault.open(dir, "db.fetchSize", "1");
+        fields.setFields(login("A"), ordered("password", "first"), key);
+        fields.setFields(login("B"), ordered("password", "second"), key);
+
+        List<CharSequence> seen = new ArrayList<>();
+        fields.forEachSecretByType(EntryType.LOGIN, key, new SecretArena(), (entry, values) -> {
+            assertEquals(entry.getTitle().equals("A") ? "first" : "second", values.get("password").toString());
+            seen.add(values.get("password"));
+        });
+
+        assertEquals(2, seen.size());
+        for (CharSequence value : seen) assertThrows(IllegalStateException.class, value::toString);
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private long login(String title) throws SQLException {
+        return entries.insert(EntryType.LOGIN, title, null, false, 1L);
+    }
+
+    private static Map<String, String> ordered(String... keyValues) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) map.put(keyValues[i], keyValues[i + 1]);
+        return map;
+    }
+
+    private static byte[] storedRecord(long entryId) throws SQLException {
+        try (Connection c = DatabaseManager.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT fields_enc FROM entries WHERE id = ?")) {
+            ps.setLong(1, entryId);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getBytes(1);
+            }
+        }
+    }
+
+    private static void setStoredRecord(long entryId, byte[] record) throws SQLException {
+        try (Connection c = DatabaseManager.getConnection();
+             PreparedStatement ps = c.prepareStatement("UPDATE entries SET fields_enc = ? WHERE id = ?")) {
+            ps.setBytes(1, record);
+            ps.setLong(2, entryId);
+            ps.executeUpdate();
+        }
+    }
+
+    private static int storedKeyVersion(long entryId) throws SQLException {
+        try (Connection c = DatabaseManager.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT fields_key_version FROM entries WHERE id = ?")) {
+            ps.setLong(1, entryId);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.passwordmanager.dao;
+
+import com.passwordmanager.crypto.CryptoUtil;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The binary field record format and its entry-id binding. No database. */
+class FieldRecordTest {
+
+    @Test
+    void roundTripKeepsOrderAndDropsBlankValues() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("username", "me");
+        fields.put("notes", "  ");
+        fields.put("password", "pä$$wörd");
+        fields.put("url", null);
+
+        Map<String, String> decoded = FieldRecord.decode(FieldRecord.encode(fields));
+        assertEquals(List.of("username", "password"), new ArrayList<>(decoded.keySet()));
+        assertEquals("pä$$wörd", decoded.get("password"));
+    }
+
+    @Test
+    void layoutIsFormatCountThenLengthPrefixedStrings() {
+        byte[] record = FieldRecord.encode(Map.of("k", "vv"));
+
+        assertArrayEquals(new byte[]{1, 1, 1, 'k', 2, 'v', 'v'}, record);
+    }
+
+    @Test
+    void longValuesUseMultiByteVarints() {
+        String value  = "a".repeat(300);
+        byte[] record = FieldRecord.encode(Map.of("k", value));
+
+        // 300 = 0b10_0101100 → 0xAC 0x02
+        assertEquals(4 + 2 + 300, record.length);
+        assertEquals((byte) 0xAC, record[4]);
+        assertEquals((byte) 0x02, record[5]);
+        assertEquals(value, FieldRecord.decode(record).get("k"));
+    }
+
+    @Test
+    void emptyRecordDecodesToNoFields() {
+        assertTrue(FieldRecord.decode(FieldRecord.encode(Map.of())).isEmpty());
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        byte[] record = FieldRecord.encode(Map.of("k", "v"));
+        record[0] = 2;
+
+        assertThrows(IllegalStateException.class, () -> FieldRecord.decode(record));
+    }
+
+    @Test
+    void customDecoderSeesEachValue() {
+        Map<String, Integer> lengths = FieldRecord.decode(
+                FieldRecord.encode(Map.of("pin", "1234")), (utf8, off, len) -> len);
+
+        assertEquals(Map.of("pin", 4), lengths);
+    }
+
+    @Test
+    void recordOnlyDecryptsForItsOwnEntry() throws Exception {
+        SecretKey key = CryptoUtil.generateDataKey();
+        byte[] enc    = CryptoUtil.encrypt(FieldRecord.encode(Map.of("k", "v")), key, FieldRecord.aad(7));
+
+        assertEquals("v", FieldRecord.decode(CryptoUtil.decrypt(enc, key, FieldRecord.aad(7))).get("k"));
+        assertThrows(AEADBadTagException.class, () -> CryptoUtil.decrypt(enc, key, FieldRecord.aad(8)));
+        assertThrows(AEADBadTagException.class, () -> CryptoUtil.decrypt(enc, key));
+    }
+
+    @Test
+    void aadIsTheBigEndianEntryId() {
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0, 0, 1, 2}, FieldRecord.aad(0x0102));
+    }
+}
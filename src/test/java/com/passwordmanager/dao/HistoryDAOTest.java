@@ -0,0 +1,89 @@
+package com.passwordmanager.dao;
+
+import com.passwordmanager.crypto.CryptoUtil;
+import com.passwordmanager.crypto.SecretArena;
+import com.passwordmanager.model.EntryType;
+import com.passwordmanager.model.PasswordHistory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The per-entry password history ring against an embedded vault. */
+class HistoryDAOTest {
+
+    @TempDir
+    Path dir;
+
+    private final HistoryDAO  history = new HistoryDAO();
+    private final SecretKey   key     = CryptoUtil.generateDataKey();
+    private final SecretArena arena   = new SecretArena();
+    private long entryId;
+
+    @BeforeEach
+    void openVault() throws Exception {
+        EmbeddedVault.open(dir);
+        entryId = new EntryDAO().insert(EntryType.LOGIN, "Mail", null, false, 1L);
+    }
+
+    @AfterEach
+    void closeVault() {
+        EmbeddedVault.close();
+    }
+
+    @Test
+    void savedPasswordsComeBackNewestFirst() throws Exception {
+        save("one", "two", "three");
+
+        assertEquals(List.of("three", "two", "one"), passwords(history.findByEntry(entryId, key, arena)));
+    }
+
+    @Test
+    void ringKeepsOnlyTheNewest() throws Exception {
+        for (int i = 1; i <= HistoryDAO.MAX_HISTORY + 2; i++) save("pw" + i);
+
+        List<String> kept = passwords(history.findByEntry(entryId, key, arena));
+        assertEquals(HistoryDAO.MAX_HISTORY, kept.size());
+        assertEquals("pw" + (HistoryDAO.MAX_HISTORY + 2), kept.get(0));
+        assertFalse(kept.contains("pw1"));
+        assertFalse(kept.contains("pw2"));
+    }
+
+    @Test
+    void historyIsUnreadableOnceItsScopeIsClosed() throws Exception {
+        save("old");
+
+        SecretArena scope = arena.openScope();
+        CharSequence password = history.findByEntry(entryId, key, scope).get(0).getPassword();
+        assertEquals("old", password.toString());
+
+        scope.close();
+        assertThrows(IllegalStateException.class, password::toString);
+    }
+
+    @Test
+    void otherEntriesHaveTheirOwnHistory() throws Exception {
+        save("mine");
+        long other = new EntryDAO().insert(EntryType.LOGIN, "Other", null, false, 1L);
+
+        assertTrue(history.findByEntry(other, key, arena).isEmpty());
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private void save(String... passwords) throws Exception {
+        for (String pw : passwords) history.save(entryId, pw, key);
+    }
+
+    private static List<String> passwords(List<PasswordHistory> rows) {
+        List<String> list = new ArrayList<>();
+        for (PasswordHistory h : rows) list.add(h.getPassword().toString());
+        return list;
+    }
+}
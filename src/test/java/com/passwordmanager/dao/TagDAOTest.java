@@ -0,0 +1,117 @@
+package com.passwordmanager.dao;
+
+import com.passwordmanager.db.DatabaseManager;
+import com.passwordmanager.model.EntryType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Tag links against an embedded vault. */
+class TagDAOTest {
+
+    @TempDir
+    Path dir;
+
+    private final TagDAO   tags    = new TagDAO();
+    private final EntryDAO entries = new EntryDAO();
+
+    @BeforeEach
+    void openVault() throws Exception {
+        EmbeddedVault.open(dir);
+    }
+
+    @AfterEach
+    void closeVault() {
+        EmbeddedVault.close();
+    }
+
+    @Test
+    void setTagsReplacesPreviousTags() throws Exception {
+        long id = entry("Mail");
+
+        tags.setTagsForEntry(id, List.of("work", " personal ", "", "work"));
+        assertEquals(List.of("personal", "work"), tags.findNamesByEntry(id));
+
+        tags.setTagsForEntry(id, List.of("archive"));
+        assertEquals(List.of("archive"), tags.findNamesByEntry(id));
+
+        tags.setTagsForEntry(id, List.of());
+        assertTrue(tags.findNamesByEntry(id).isEmpty());
+    }
+
+    @Test
+    void resavingExistingTagsDoesNotBurnIds() throws Exception {
+        long a = entry("A");
+        long b = entry("B");
+
+        tags.setTagsForEntry(a, List.of("shared"));
+        tags.setTagsForEntry(b, List.of("shared"));
+        tags.setTagsForEntry(a, List.of("shared"));
+        tags.setTagsForEntry(b, List.of("shared", "new"));
+
+        assertEquals(2, tags.findAll().size());
+        assertEquals(1, maxTagId() - minTagId());
+    }
+
+    @Test
+    void tooLongNameIsRejectedWithoutTouchingExistingTags() throws Exception {
+        long id = entry("Mail");
+        tags.setTagsForEntry(id, List.of("kept"));
+
+        String tooLong = "x".repeat(TagDAO.MAX_NAME_LENGTH + 1);
+        assertThrows(IllegalArgumentException.class, () -> tags.setTagsForEntry(id, List.of("new", tooLong)));
+        assertEquals(List.of("kept"), tags.findNamesByEntry(id));
+
+        tags.setTagsForEntry(id, List.of("x".repeat(TagDAO.MAX_NAME_LENGTH)));
+        assertEquals(1, tags.findNamesByEntry(id).size());
+    }
+
+    @Test
+    void namesByEntriesGroupsPerEntry() throws Exception {
+        long a = entry("A");
+        long b = entry("B");
+        long c = entry("C");
+        tags.setTagsForEntry(a, List.of("z", "y"));
+        tags.setTagsForEntry(b, List.of("y"));
+
+        Map<Long, List<String>> names = tags.findNamesByEntries(List.of(a, b, c));
+        assertEquals(List.of("y", "z"), names.get(a));
+        assertEquals(List.of("y"), names.get(b));
+        assertNull(names.get(c));
+        assertTrue(tags.findNamesByEntries(List.of()).isEmpty());
+    }
+
+    @Test
+    void findOrCreateReturnsExistingTag() throws Exception {
+        int id = tags.findOrCreate("work").getId();
+
+        assertEquals(id, tags.findOrCreate("work").getId());
+        assertEquals(1, tags.findAll().size());
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private long entry(String title) throws SQLException {
+        return entries.insert(EntryType.LOGIN, title, null, false, 1L);
+    }
+
+    private static long minTagId() throws SQLException { return tagId("MIN"); }
+
+    private static long maxTagId() throws SQLException { return tagId("MAX"); }
+
+    private static long tagId(String aggregate) throws SQLException {
+        try (Connection c = DatabaseManager.getConnection();
+             Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("SELECT " + aggregate + "(id) FROM tags")) {
+            assertTrue(rs.next());
+            return rs.getLong(1);
+        }
+    }
+}
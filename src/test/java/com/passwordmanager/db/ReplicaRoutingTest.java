@@ -0,0 +1,132 @@
+package com.passwordmanager.db;
+
+import com.passwordmanager.config.ConfigLoader;
+import com.zaxxer.hikari.HikariConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read routing between a primary and one replica, both in-process H2 databases. Each
+ * holds a one-row {@code probe} table naming it, so a test can tell which one served a
+ * connection.
+ */
+class ReplicaRoutingTest {
+
+    private static final long LAG_MILLIS = 300;
+
+    private String primaryUrl;
+    private String replicaUrl;
+
+    @BeforeEach
+    void openPrimaryAndReplica() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("db.replica.maxLagMillis", String.valueOf(LAG_MILLIS));
+        props.setProperty("db.replica.timeoutMillis", "250");
+        props.setProperty("db.replica.retryMillis", "60000");
+        ConfigLoader.init(props);
+
+        String id  = UUID.randomUUID().toString();
+        primaryUrl = h2Url("primary-" + id);
+        replicaUrl = h2Url("replica-" + id);
+        createProbe(primaryUrl, "primary");
+        createProbe(replicaUrl, "replica");
+
+        open(replicaUrl);
+    }
+
+    @AfterEach
+    void shutdown() {
+        DatabaseManager.shutdown();
+    }
+
+    @Test
+    void readsGoToReplicaWhenIdle() throws Exception {
+        assertEquals("replica", servedBy(DatabaseManager.getReadConnection()));
+        assertEquals("replica", servedBy(DatabaseManager.getReadConnection(Workload.BULK)));
+    }
+
+    @Test
+    void writesAndPlainConnectionsUsePrimary() throws Exception {
+        assertEquals("primary", servedBy(DatabaseManager.getConnection()));
+        assertEquals("primary", servedBy(DatabaseManager.getAutonomousConnection()));
+    }
+
+    @Test
+    void primaryReadDoesNotPinReadsToPrimary() throws Exception {
+        assertEquals("primary", servedBy(DatabaseManager.getConnection()));
+        assertEquals("replica", servedBy(DatabaseManager.getReadConnection()));
+    }
+
+    @Test
+    void writeKeepsReadsOnPrimaryForLagWindow() throws Exception {
+        try (Connection c = DatabaseManager.getConnection();
+             PreparedStatement ps = c.prepareStatement("UPDATE probe SET touched = touched + 1")) {
+            ps.executeUpdate();
+        }
+        assertEquals("primary", servedBy(DatabaseManager.getReadConnection()));
+
+        Thread.sleep(LAG_MILLIS + 100);
+        assertEquals("replica", servedBy(DatabaseManager.getReadConnection()));
+    }
+
+    @Test
+    void unitOfWorkCommitKeepsReadsOnPrimary() throws Exception {
+        UnitOfWork.run(() -> {
+            // Inside the unit every read shares its connection
+            assertEquals("primary", servedBy(DatabaseManager.getReadConnection()));
+        });
+        assertEquals("primary", servedBy(DatabaseManager.getReadConnection()));
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToPrimary() throws Exception {
+        DatabaseManager.shutdown();
+        open(h2Url("missing-" + UUID.randomUUID()) + ";IFEXISTS=TRUE");
+
+        assertEquals("primary", servedBy(DatabaseManager.getReadConnection()));
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    /** Opens the pools and waits until the schema migration's writes leave the lag window. */
+    private void open(String replica) throws Exception {
+        DatabaseManager.open(() -> h2Config(primaryUrl), false, List.of(() -> h2Config(replica)));
+        Thread.sleep(LAG_MILLIS + 100);
+    }
+
+    private static String h2Url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=VALUE;DB_CLOSE_DELAY=-1";
+    }
+
+    private static HikariConfig h2Config(String url) {
+        HikariConfig cfg = new HikariConfig();
+        cfg.setJdbcUrl(url);
+        cfg.setUsername("sa");
+        cfg.setPassword("");
+        return cfg;
+    }
+
+    private static void createProbe(String url, String name) throws SQLException {
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             Statement s = c.createStatement()) {
+            s.executeUpdate("CREATE TABLE probe (name VARCHAR(16), touched INT DEFAULT 0)");
+            s.executeUpdate("INSERT INTO probe (name) VALUES ('" + name + "')");
+        }
+    }
+
+    /** Which database the connection belongs to; closes it. */
+    private static String servedBy(Connection connection) throws SQLException {
+        try (Connection c = connection;
+             Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("SELECT name FROM probe")) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.passwordmanager.service;
+
+import com.passwordmanager.dao.EmbeddedVault;
+import com.passwordmanager.db.DatabaseManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Master-password unlock against an embedded vault, and the vault_meta cache behind it. */
+class AuthServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final AuthService auth = new AuthService();
+
+    @BeforeEach
+    void setUpVault() throws Exception {
+        EmbeddedVault.open(dir, "security.kdfTargetMillis", "1");
+        auth.setupVault("first password".toCharArray());
+        auth.lock();
+    }
+
+    @AfterEach
+    void closeVault() {
+        EmbeddedVault.close();
+    }
+
+    @Test
+    void secondUnlockReadsNoVaultMeta() throws Exception {
+        assertTrue(auth.verifyMasterPassword("first password".toCharArray()));
+        auth.lock();
+
+        // Any vault_meta query would now fail
+        sql("ALTER TABLE vault_meta RENAME TO vault_meta_hidden");
+        try {
+            assertTrue(auth.verifyMasterPassword("first password".toCharArray()));
+        } finally {
+            sql("ALTER TABLE vault_meta_hidden RENAME TO vault_meta");
+        }
+    }
+
+    @Test
+    void wrongPasswordIsRejected() throws Exception {
+        assertFalse(auth.verifyMasterPassword("wrong password".toCharArray()));
+        assertFalse(auth.isUnlocked());
+    }
+
+    @Test
+    void passwordChangedByAnotherClientIsPickedUp() throws Exception {
+        sql("CREATE TABLE meta_before AS SELECT key_name, value, value_bin FROM vault_meta");
+        auth.changeMasterPassword("first password".toCharArray(), "second password".toCharArray());
+        auth.lock();
+
+        // Another client puts the first password back; this instance still caches the second
+        sql("DELETE FROM vault_meta");
+        sql("INSERT INTO vault_meta (key_name, value, value_bin) SELECT key_name, value, value_bin FROM meta_before");
+
+        assertTrue(auth.verifyMasterPassword("first password".toCharArray()));
+        auth.lock();
+        assertFalse(auth.verifyMasterPassword("second password".toCharArray()));
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static void sql(String statement) throws SQLException {
+        try (Connection c = DatabaseManager.getConnection();
+             Statement s = c.createStatement()) {
+            s.execute(statement);
+        }
+    }
+}
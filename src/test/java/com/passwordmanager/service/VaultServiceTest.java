@@ -0,0 +1,100 @@
+package com.passwordmanager.service;
+
+import com.passwordmanager.crypto.CryptoUtil;
+import com.passwordmanager.dao.*;
+import com.passwordmanager.model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Save logic of {@link VaultService} over mocked DAOs. The embedded vault only supplies
+ * the connection each {@link com.passwordmanager.db.UnitOfWork} runs on.
+ */
+class VaultServiceTest {
+
+    private static final long ENTRY_ID = 42;
+
+    @TempDir
+    Path dir;
+
+    private final EntryDAO   entries = mock(EntryDAO.class);
+    private final FieldDAO   fields  = mock(FieldDAO.class);
+    private final HistoryDAO history = mock(HistoryDAO.class);
+    private final TagDAO     tags    = mock(TagDAO.class);
+    private final SecretKey  key     = CryptoUtil.generateDataKey();
+
+    private final VaultService vault = new VaultService(
+            entries, fields, history, mock(CategoryDAO.class), tags, mock(EntryDetailDAO.class));
+
+    @BeforeEach
+    void openVault() throws Exception {
+        EmbeddedVault.open(dir);
+        when(entries.findById(ENTRY_ID)).thenReturn(new Entry(ENTRY_ID, EntryType.LOGIN, "Mail", null, false, 1L, 1L));
+    }
+
+    @AfterEach
+    void closeVault() {
+        EmbeddedVault.close();
+    }
+
+    @Test
+    void changedPasswordGoesToHistoryAndStoredFieldsAreReused() throws Exception {
+        FieldDAO.Stored stored = stored("old");
+        when(fields.getStored(ENTRY_ID, key)).thenReturn(stored);
+
+        EntryDto dto = edit("new");
+        vault.updateEntry(dto, key);
+
+        verify(history).save(ENTRY_ID, "old", key);
+        verify(fields).setFields(ENTRY_ID, dto.getFields(), key, stored);
+        verify(fields, never()).getFields(anyLong(), any());
+        assertEquals(4, dto.getVersion());
+    }
+
+    @Test
+    void unchangedPasswordWritesNoHistory() throws Exception {
+        when(fields.getStored(ENTRY_ID, key)).thenReturn(stored("same"));
+
+        vault.updateEntry(edit("same"), key);
+
+        verifyNoInteractions(history);
+    }
+
+    @Test
+    void conflictWritesNothingElse() throws Exception {
+        doThrow(new EntryConflictException(ENTRY_ID))
+                .when(entries).update(eq(ENTRY_ID), any(), any(), anyLong(), eq(3));
+
+        EntryDto dto = edit("new");
+        assertThrows(EntryConflictException.class, () -> vault.updateEntry(dto, key));
+
+        verifyNoInteractions(history, fields, tags);
+        assertEquals(3, dto.getVersion());
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static FieldDAO.Stored stored(String password) {
+        return new FieldDAO.Stored(1, Map.of("password", password), Map.of());
+    }
+
+    private static EntryDto edit(String password) {
+        EntryDto dto = new EntryDto();
+        dto.setId(ENTRY_ID);
+        dto.setType(EntryType.LOGIN);
+        dto.setTitle("Mail");
+        dto.setVersion(3);
+        dto.setField("password", password);
+        return dto;
+    }
+}